@@ -0,0 +1,126 @@
+package dev.JustRed23.stonebrick.log;
+
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures the cost of a single call to the fallback logger.
+ * Run with {@code ./gradlew jmh}, the gc profiler reports the allocated bytes per call as {@code gc.alloc.rate.norm}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoggingBenchmark {
+
+    public enum Sink {
+        /**
+         * Formats and encodes every line but discards the bytes
+         */
+        NULL,
+        /**
+         * Writes to a rolling log file on the calling thread
+         */
+        FILE,
+        /**
+         * Hands every line to the asynchronous writer, which writes to a rolling log file
+         */
+        ASYNC
+    }
+
+    @Param({"NULL", "FILE", "ASYNC"})
+    public Sink sink;
+
+    private Path directory;
+    private Logger logger;
+    private int counter;
+    //Boxed once, so the benchmarks only measure what the logger allocates
+    private final Integer request = 1234, duration = 12;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("stonebrick-log");
+
+        FallbackConfig.SHOW_LOG_NAME = true;
+        FallbackConfig.SHOW_DATE_TIME = true;
+        FallbackConfig.SHOW_THREAD_NAME = true;
+        FallbackConfig.DATE_TIME_FORMAT = "HH:mm:ss.SSS";
+        FallbackConfig.DEFAULT_LOG_LEVEL = LogLevel.INFO;
+        FallbackConfig.LOG_LOCATION = directory.resolve("benchmark.log").toString();
+        FallbackConfig.LOG_MAX_SIZE = 64 * 1024 * 1024;
+        FallbackConfig.LOG_ROTATION = RotationInterval.NONE;
+        FallbackConfig.LOG_MAX_FILES = 2;
+        FallbackConfig.LOG_COMPRESS = false;
+        FallbackConfig.ASYNC = sink == Sink.ASYNC;
+        FallbackConfig.ASYNC_BUFFER_SIZE = 8192;
+        FallbackConfig.OVERFLOW_POLICY = OverflowPolicy.BLOCK;
+
+        if (sink == Sink.NULL)
+            SBFallback.init(new PrintStream(OutputStream.nullOutputStream()));
+        else SBFallback.init();
+
+        logger = new SBFallback("LoggingBenchmark", LoggingBenchmark.class.getName());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SBLogger.flush();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void disabled() {
+        logger.debug("Request {} took {} ms", request, duration);
+    }
+
+    @Benchmark
+    public void disabledLazy() {
+        logger.debug("Request {}", SBLogger.lazy(() -> "expensive " + counter));
+    }
+
+    @Benchmark
+    public void disabledSupplier() {
+        SBLogger.log(logger, LogLevel.DEBUG, () -> "expensive");
+    }
+
+    @Benchmark
+    public void enabledPlain() {
+        logger.info("Request handled");
+    }
+
+    @Benchmark
+    public void enabledParameterized() {
+        logger.info("Request {} took {} ms", request, duration);
+    }
+
+    @Benchmark
+    public void enabledLazy() {
+        logger.info("Request {}", SBLogger.lazy(() -> "expensive"));
+    }
+
+    @Benchmark
+    public void enabledException() {
+        logger.warn("Request failed", EXCEPTION);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void contendedParameterized() {
+        logger.info("Request {} took {} ms", request, duration);
+    }
+
+    private static final Exception EXCEPTION = new IllegalStateException("Benchmark");
+}
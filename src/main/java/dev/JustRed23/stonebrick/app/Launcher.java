@@ -1,7 +1,10 @@
 package dev.JustRed23.stonebrick.app;
 
 import dev.JustRed23.abcm.Config;
+import dev.JustRed23.stonebrick.cfg.LimitPolicyParser;
 import dev.JustRed23.stonebrick.cfg.LogLevelParser;
+import dev.JustRed23.stonebrick.cfg.OverflowPolicyParser;
+import dev.JustRed23.stonebrick.cfg.RotationIntervalParser;
 import dev.JustRed23.stonebrick.data.FileStructure;
 import dev.JustRed23.stonebrick.log.SBLogger;
 import dev.JustRed23.stonebrick.net.NetworkManager;
@@ -63,6 +66,9 @@ class Launcher {
 
     private static void launch(Class<? extends Application> appClass, String[] args) throws Exception {
         Config.addParser(LogLevelParser.class);
+        Config.addParser(LimitPolicyParser.class);
+        Config.addParser(OverflowPolicyParser.class);
+        Config.addParser(RotationIntervalParser.class);
         Config.addScannable("dev.JustRed23");
         Config.init();
         LOGGER = SBLogger.getLogger(appClass);
@@ -94,6 +100,7 @@ class Launcher {
                 try {
                     application.init();
                     Config.rescan(false);
+                    SBLogger.reloadLevels();
                 } catch (Throwable t) {
                     LOGGER.warn("Exception in Application init method");
                     initError = t;
@@ -153,6 +160,7 @@ class Launcher {
             }
         } finally {
             CommonThreads.shutdown();
+            SBLogger.flush();
             Config.destroy();
         }
     }
@@ -0,0 +1,17 @@
+package dev.JustRed23.stonebrick.cfg;
+
+import dev.JustRed23.abcm.parsing.IParser;
+import dev.JustRed23.stonebrick.net.LimitPolicy;
+
+import java.util.List;
+
+public class LimitPolicyParser implements IParser<LimitPolicy> {
+
+    public LimitPolicy parse(String value) {
+        return LimitPolicy.translate(value);
+    }
+
+    public List<Class<?>> canParse() {
+        return List.of(LimitPolicy.class);
+    }
+}
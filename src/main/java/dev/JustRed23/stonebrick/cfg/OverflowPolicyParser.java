@@ -0,0 +1,17 @@
+package dev.JustRed23.stonebrick.cfg;
+
+import dev.JustRed23.abcm.parsing.IParser;
+import dev.JustRed23.stonebrick.log.OverflowPolicy;
+
+import java.util.List;
+
+public class OverflowPolicyParser implements IParser<OverflowPolicy> {
+
+    public OverflowPolicy parse(String value) {
+        return OverflowPolicy.translate(value);
+    }
+
+    public List<Class<?>> canParse() {
+        return List.of(OverflowPolicy.class);
+    }
+}
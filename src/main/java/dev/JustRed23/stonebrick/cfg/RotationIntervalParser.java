@@ -0,0 +1,17 @@
+package dev.JustRed23.stonebrick.cfg;
+
+import dev.JustRed23.abcm.parsing.IParser;
+import dev.JustRed23.stonebrick.log.RotationInterval;
+
+import java.util.List;
+
+public class RotationIntervalParser implements IParser<RotationInterval> {
+
+    public RotationInterval parse(String value) {
+        return RotationInterval.translate(value);
+    }
+
+    public List<Class<?>> canParse() {
+        return List.of(RotationInterval.class);
+    }
+}
@@ -0,0 +1,217 @@
+package dev.JustRed23.stonebrick.log;
+
+import org.slf4j.helpers.Util;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands lines to a single writer thread through a preallocated ring buffer, so logging never waits for the underlying stream.
+ * <p>
+ * Logging threads claim a slot with a single CAS and copy their line into it, the writer collects every available line into one large write
+ * and only flushes the stream when the buffer is empty. When the buffer is full the {@link OverflowPolicy} decides whether the line waits or is dropped.
+ */
+class AsyncTarget implements LogTarget {
+
+    private static final int BATCH_SIZE = 64 * 1024;
+    private static final int MAX_SLOT_CAPACITY = 16 * 1024;
+    private static final long IDLE_PARK = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final PrintStream out;
+    private final OverflowPolicy policy;
+
+    private final Slot[] slots;
+    private final int mask;
+
+    //Next sequence to claim by a logging thread
+    private final AtomicLong head = new AtomicLong();
+    //Next sequence to read by the writer, everything before it is free
+    private volatile long tail;
+    //Everything before this sequence reached the stream
+    private volatile long flushed;
+
+    private final Thread writer;
+    private volatile boolean writerParked;
+    private volatile boolean closed;
+
+    private final LongAdder[] dropped = new LongAdder[LogLevel.values().length];
+
+    //Only used by the writer thread
+    private final LineEncoder encoder;
+    //Used once the writer stopped
+    private final StreamTarget direct;
+
+    AsyncTarget(PrintStream out, Charset charset, int capacity, OverflowPolicy policy) {
+        this.out = out;
+        this.policy = policy;
+        this.encoder = new LineEncoder(out, charset, BATCH_SIZE);
+        this.direct = new StreamTarget(out, charset);
+
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new Slot[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++)
+            slots[i] = new Slot(i - size);
+
+        for (int i = 0; i < dropped.length; i++)
+            dropped[i] = new LongAdder();
+
+        writer = new Thread(this::run, "Log Writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "Log Writer Shutdown"));
+    }
+
+    public void write(LogLevel level, CharSequence line, Throwable t) {
+        if (closed) {
+            direct.write(level, line, t);
+            return;
+        }
+
+        long sequence;
+        while (true) {
+            sequence = head.get();
+            if (sequence - tail >= slots.length) {
+                if (policy == OverflowPolicy.DROP || (policy == OverflowPolicy.DROP_BELOW_WARN && level.getLevel() < LogLevel.WARN.getLevel())) {
+                    dropped[level.ordinal()].increment();
+                    return;
+                }
+
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(10_000);
+                if (closed || !writer.isAlive()) {
+                    direct.write(level, line, t);
+                    return;
+                }
+                continue;
+            }
+
+            if (head.compareAndSet(sequence, sequence + 1))
+                break;
+        }
+
+        Slot slot = slots[(int) (sequence & mask)];
+        slot.text.setLength(0);
+        slot.text.append(line);
+        slot.throwable = t;
+        slot.published = sequence;
+
+        if (writerParked)
+            LockSupport.unpark(writer);
+    }
+
+    public void flush() {
+        long target = head.get();
+        while (flushed < target && writer.isAlive()) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(100_000);
+        }
+    }
+
+    public void close() {
+        if (closed)
+            return;
+        flush();
+        closed = true;
+        LockSupport.unpark(writer);
+    }
+
+    long dropped() {
+        long total = 0;
+        for (LongAdder adder : dropped)
+            total += adder.sum();
+        return total;
+    }
+
+    long dropped(LogLevel level) {
+        return dropped[level.ordinal()].sum();
+    }
+
+    //Writer
+    private void run() {
+        try {
+            drain();
+        } finally {
+            //However the writer stopped, later lines are written directly
+            closed = true;
+        }
+    }
+
+    private void drain() {
+        long next = tail;
+        while (!closed || next < head.get()) {
+            Slot slot = slots[(int) (next & mask)];
+            if (slot.published != next) {
+                if (encoder.isPending())
+                    writeBatch();
+                flushed = next;
+
+                writerParked = true;
+                if (slots[(int) (next & mask)].published != next && !closed)
+                    LockSupport.parkNanos(this, IDLE_PARK);
+                writerParked = false;
+                continue;
+            }
+
+            //A line that can not be written is skipped, it must not take the writer down with it
+            try {
+                write(slot);
+            } catch (Throwable t) {
+                Util.report("Could not write a log line, it is skipped", t);
+            }
+            slot.throwable = null;
+            if (slot.text.capacity() > MAX_SLOT_CAPACITY)
+                slot.text = new StringBuilder(256);
+
+            tail = ++next;
+        }
+
+        if (encoder.isPending())
+            writeBatch();
+        flushed = next;
+    }
+
+    private void write(Slot slot) {
+        CharSequence trace = null;
+        if (slot.throwable != null) {
+            StringWriter writer = new StringWriter();
+            slot.throwable.printStackTrace(new PrintWriter(writer));
+            trace = writer.getBuffer();
+        }
+
+        //A full buffer is written in the middle of a line, hold the stream so other writers can not end up inside it
+        synchronized (out) {
+            encoder.append(slot.text);
+            encoder.newLine();
+            if (trace != null)
+                encoder.append(trace);
+
+            //Flush every full buffer at a line boundary, so the stream can rotate between lines under sustained load
+            if (encoder.isDrained())
+                writeBatch();
+        }
+    }
+
+    private void writeBatch() {
+        synchronized (out) {
+            encoder.end();
+            out.flush();
+        }
+    }
+
+    private static class Slot {
+        private StringBuilder text = new StringBuilder(256);
+        private Throwable throwable;
+        private volatile long published;
+
+        private Slot(long published) {
+            this.published = published;
+        }
+    }
+}
@@ -15,7 +15,7 @@ public final class FallbackConfig {
     @ConfigField(defaultValue = "false")
     public static boolean SHOW_THREAD_NAME;
 
-    @ConfigField(defaultValue = "hh:mm:ss.sss")
+    @ConfigField(defaultValue = "hh:mm:ss.SSS")
     public static String DATE_TIME_FORMAT;
 
     @ConfigField(defaultValue = "System.out")
@@ -23,4 +23,73 @@ public final class FallbackConfig {
 
     @ConfigField(defaultValue = "INFO", optional = true)
     public static LogLevel DEFAULT_LOG_LEVEL;
+
+    /**
+     * Levels for specific loggers or packages, for example {@code dev.JustRed23.stonebrick.net=DEBUG, dev.JustRed23.stonebrick.cache=WARN}
+     */
+    @ConfigField(defaultValue = "", optional = true)
+    public static String LOG_LEVELS;
+
+    /**
+     * The amount of times the same message of a logger is written per interval, 0 writes every message
+     */
+    @ConfigField(defaultValue = "0", optional = true)
+    public static int LOG_RATE_LIMIT;
+
+    @ConfigField(defaultValue = "1000", optional = true)
+    public static int LOG_RATE_INTERVAL;
+
+    /**
+     * Keeps the last events of every level in memory, only events at or above the configured level are written.
+     * The events of the last {@link #FLIGHT_RECORDER_SECONDS} are dumped to {@link #FLIGHT_RECORDER_FILE} on an error, on shutdown or with {@link SBLogger#dumpFlightRecorder()}.
+     * Methods like {@code isDebugEnabled()} still follow the configured level, events logged behind such a check are not recorded.
+     */
+    @ConfigField(defaultValue = "false", optional = true)
+    public static boolean FLIGHT_RECORDER;
+
+    /**
+     * The amount of events the flight recorder keeps, the arguments and exceptions of these events can not be garbage collected until they are overwritten
+     */
+    @ConfigField(defaultValue = "65536", optional = true)
+    public static int FLIGHT_RECORDER_SIZE;
+
+    @ConfigField(defaultValue = "30", optional = true)
+    public static int FLIGHT_RECORDER_SECONDS;
+
+    @ConfigField(defaultValue = "flight-recorder.log", optional = true)
+    public static String FLIGHT_RECORDER_FILE;
+
+    @ConfigField(defaultValue = "true", optional = true)
+    public static boolean FLIGHT_RECORDER_DUMP_ON_ERROR;
+
+    /**
+     * Writes every line as a JSON object with the timestamp, level, logger, thread, message, arguments and exception as separate fields
+     */
+    @ConfigField(defaultValue = "false", optional = true)
+    public static boolean JSON_FORMAT;
+
+    /**
+     * Rotates the log file once it grows past this many bytes, 0 disables size based rotation.
+     * Files are only rotated, compressed and cleaned up when this or {@link #LOG_ROTATION} is set
+     */
+    @ConfigField(defaultValue = "0", optional = true)
+    public static int LOG_MAX_SIZE;
+
+    @ConfigField(defaultValue = "NONE", optional = true)
+    public static RotationInterval LOG_ROTATION;
+
+    @ConfigField(defaultValue = "10", optional = true)
+    public static int LOG_MAX_FILES;
+
+    @ConfigField(defaultValue = "true", optional = true)
+    public static boolean LOG_COMPRESS;
+
+    @ConfigField(defaultValue = "false", optional = true)
+    public static boolean ASYNC;
+
+    @ConfigField(defaultValue = "8192", optional = true)
+    public static int ASYNC_BUFFER_SIZE;
+
+    @ConfigField(defaultValue = "BLOCK", optional = true)
+    public static OverflowPolicy OVERFLOW_POLICY;
 }
\ No newline at end of file
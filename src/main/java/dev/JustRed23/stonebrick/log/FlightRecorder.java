@@ -0,0 +1,171 @@
+package dev.JustRed23.stonebrick.log;
+
+import org.slf4j.helpers.Util;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the most recent log events of every level in a fixed-size circular buffer, so the context of a failure is available even when it was not logged.
+ * <p>
+ * Recording an event only stores references to its message and arguments in a preallocated slot, nothing is formatted until the buffer is dumped.
+ * Arguments are formatted at dump time, so mutable arguments show their state at that moment.
+ * The slots keep their arguments and throwables reachable until they are overwritten, also after the events left the dump window.
+ */
+class FlightRecorder {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH-mm-ss-SSS").withZone(ZoneId.systemDefault());
+    private static final long MIN_DUMP_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final long window;
+    private final Path file;
+    private volatile long dumpedUntil;
+    private final AtomicLong lastAutomaticDump = new AtomicLong(Long.MIN_VALUE / 2);
+    private final ExecutorService dumper = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r);
+        t.setName("Flight Recorder");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * @param capacity The amount of events kept, rounded up to a power of two
+     * @param seconds How far back a dump goes
+     * @param file The file dumps are written to, the time of the dump is added to the name
+     */
+    FlightRecorder(int capacity, int seconds, String file) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new Slot[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++)
+            slots[i] = new Slot();
+
+        this.window = TimeUnit.SECONDS.toMillis(seconds);
+        this.file = Path.of(file).toAbsolutePath();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            //Nothing happened since the last dump
+            if (sequence.get() != dumpedUntil)
+                dump();
+        }, "Flight Recorder Shutdown"));
+    }
+
+    void record(SBFallback logger, LogLevel level, String message, Object arg1, Object arg2, Object[] args, int count, Throwable t) {
+        long next = sequence.getAndIncrement();
+        Slot slot = slots[(int) (next & mask)];
+
+        //Readers skip a slot while it is being written
+        slot.sequence = -1;
+        slot.time = System.currentTimeMillis();
+        slot.logger = logger;
+        slot.level = level;
+        slot.thread = Thread.currentThread().getName();
+        slot.message = message;
+        slot.arg1 = arg1;
+        slot.arg2 = arg2;
+        slot.args = args;
+        slot.count = count;
+        slot.throwable = t;
+        slot.sequence = next;
+    }
+
+    /**
+     * Dumps in the background, at most once every 10 seconds so a burst of errors does not cause a burst of dumps
+     */
+    void dumpAsync() {
+        long now = System.currentTimeMillis();
+        long last = lastAutomaticDump.get();
+        if (now - last >= MIN_DUMP_INTERVAL && lastAutomaticDump.compareAndSet(last, now))
+            dumper.execute(this::dump);
+    }
+
+    /**
+     * Writes every recorded event of the last seconds to a new file
+     * @return The file, or null if nothing was recorded or the file could not be written
+     */
+    synchronized Path dump() {
+        long end = sequence.get();
+        long start = Math.max(0, end - slots.length);
+        long since = System.currentTimeMillis() - window;
+        dumpedUntil = end;
+
+        Path target = file.resolveSibling(name(System.currentTimeMillis()));
+        StringBuilder builder = new StringBuilder(256);
+        int written = 0;
+
+        try {
+            if (target.getParent() != null)
+                Files.createDirectories(target.getParent());
+
+            try (Writer writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+                for (long i = start; i < end; i++) {
+                    Slot slot = slots[(int) (i & mask)];
+                    if (slot.sequence != i || slot.time < since)
+                        continue;
+
+                    builder.setLength(0);
+                    Throwable t = slot.throwable;
+                    builder.append(TIMESTAMP.format(Instant.ofEpochMilli(slot.time)))
+                            .append(" [").append(slot.thread).append("] [")
+                            .append(slot.level.name()).append("] ")
+                            .append(slot.logger.getName()).append(" - ");
+                    if (slot.count < 0)
+                        builder.append(slot.message);
+                    else SBFallback.appendFormatted(builder, slot.message, slot.arg1, slot.arg2, slot.args, slot.count);
+
+                    //Overwritten while formatting
+                    if (slot.sequence != i)
+                        continue;
+
+                    writer.append(builder).append(System.lineSeparator());
+                    if (t != null)
+                        t.printStackTrace(new PrintWriter(writer));
+                    written++;
+                }
+            }
+
+            if (written == 0) {
+                Files.deleteIfExists(target);
+                return null;
+            }
+            return target;
+        } catch (IOException e) {
+            Util.report("Could not write the flight recorder to `" + target + "´", e);
+            return null;
+        }
+    }
+
+    private String name(long time) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String timestamp = FILE_TIMESTAMP.format(Instant.ofEpochMilli(time));
+        return dot > 0 ? name.substring(0, dot) + "-" + timestamp + name.substring(dot) : name + "-" + timestamp;
+    }
+
+    private static class Slot {
+        private volatile long sequence = -1;
+        private long time;
+        private SBFallback logger;
+        private LogLevel level;
+        private String thread, message;
+        private Object arg1, arg2;
+        private Object[] args;
+        private int count;
+        private Throwable throwable;
+    }
+}
@@ -0,0 +1,176 @@
+package dev.JustRed23.stonebrick.log;
+
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Writes a log event as a single line of JSON without intermediate strings or JSON objects.
+ * Values are escaped while they are appended to the line, formatted values are built in a reused per thread builder first.
+ * <pre>{@code
+ * {"timestamp":"2024-01-31T12:00:00.000+01:00","level":"INFO","logger":"dev.JustRed23.App","thread":"main","message":"Hello 1","arguments":[1],"exception":{...}}
+ * }</pre>
+ */
+final class JsonLayout {
+
+    private static final TimestampCache TIMESTAMP = new TimestampCache(
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSXXX").withZone(ZoneId.systemDefault()));
+    private static final int MAX_CAUSES = 8;
+    private static final int MAX_SCRATCH_CAPACITY = 16 * 1024;
+
+    //Holds formatted values before they are escaped into the line, toString may log so nested calls append after the outer value
+    private static final ThreadLocal<StringBuilder> SCRATCH = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    private static final String[] ESCAPES = new String[128];
+    static {
+        for (int i = 0; i < 0x20; i++)
+            ESCAPES[i] = String.format("\\u%04x", i);
+        ESCAPES['"'] = "\\\"";
+        ESCAPES['\\'] = "\\\\";
+        ESCAPES['\n'] = "\\n";
+        ESCAPES['\r'] = "\\r";
+        ESCAPES['\t'] = "\\t";
+    }
+
+    private JsonLayout() {}
+
+    /**
+     * @param count The amount of arguments, -1 if the message is not a format
+     */
+    static void append(StringBuilder builder, LogLevel level, String logger, String message, Object arg1, Object arg2, Object[] args, int count, Throwable t) {
+        builder.append("{\"timestamp\":\"").append(TIMESTAMP.now())
+                .append("\",\"level\":\"").append(level.name()).append('"');
+
+        builder.append(",\"logger\":");
+        appendString(builder, logger);
+        builder.append(",\"thread\":");
+        appendString(builder, Thread.currentThread().getName());
+
+        builder.append(",\"message\":");
+        if (count < 0)
+            appendString(builder, message);
+        else {
+            StringBuilder scratch = SCRATCH.get();
+            int start = scratch.length();
+            try {
+                SBFallback.appendFormatted(scratch, message, arg1, arg2, args, count);
+                builder.append('"');
+                escape(builder, scratch, start);
+                builder.append('"');
+            } finally {
+                release(scratch, start);
+            }
+        }
+
+        if (count > 0) {
+            builder.append(",\"arguments\":[");
+            for (int i = 0; i < count; i++) {
+                if (i > 0)
+                    builder.append(',');
+                appendValue(builder, args != null ? args[i] : i == 0 ? arg1 : arg2);
+            }
+            builder.append(']');
+        }
+
+        if (t != null) {
+            builder.append(",\"exception\":");
+            appendException(builder, t, 0);
+        }
+        builder.append('}');
+    }
+
+    private static void appendValue(StringBuilder builder, Object value) {
+        if (value == null)
+            builder.append("null");
+        else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte)
+            builder.append(((Number) value).longValue());
+        else if (value instanceof Double d && Double.isFinite(d))
+            builder.append(d.doubleValue());
+        else if (value instanceof Float f && Float.isFinite(f))
+            builder.append(f.floatValue());
+        else if (value instanceof Boolean b)
+            builder.append(b.booleanValue());
+        else if (value instanceof String string)
+            appendString(builder, string);
+        else {
+            StringBuilder scratch = SCRATCH.get();
+            int start = scratch.length();
+            try {
+                SBFallback.appendArgument(scratch, value);
+                builder.append('"');
+                escape(builder, scratch, start);
+                builder.append('"');
+            } finally {
+                release(scratch, start);
+            }
+        }
+    }
+
+    private static void appendException(StringBuilder builder, Throwable t, int depth) {
+        builder.append("{\"type\":");
+        appendString(builder, t.getClass().getName());
+        builder.append(",\"message\":");
+        appendString(builder, t.getMessage());
+
+        builder.append(",\"stackTrace\":[");
+        StackTraceElement[] trace = t.getStackTrace();
+        for (int i = 0; i < trace.length; i++) {
+            if (i > 0)
+                builder.append(',');
+            builder.append('"');
+            escape(builder, trace[i].getClassName(), 0);
+            builder.append('.');
+            escape(builder, trace[i].getMethodName(), 0);
+            builder.append('(');
+            if (trace[i].isNativeMethod())
+                builder.append("Native Method");
+            else if (trace[i].getFileName() == null)
+                builder.append("Unknown Source");
+            else {
+                escape(builder, trace[i].getFileName(), 0);
+                if (trace[i].getLineNumber() >= 0)
+                    builder.append(':').append(trace[i].getLineNumber());
+            }
+            builder.append(")\"");
+        }
+        builder.append(']');
+
+        Throwable cause = t.getCause();
+        if (cause != null && cause != t && depth < MAX_CAUSES) {
+            builder.append(",\"cause\":");
+            appendException(builder, cause, depth + 1);
+        }
+        builder.append('}');
+    }
+
+    private static void appendString(StringBuilder builder, String value) {
+        if (value == null) {
+            builder.append("null");
+            return;
+        }
+
+        builder.append('"');
+        escape(builder, value, 0);
+        builder.append('"');
+    }
+
+    /**
+     * Appends the value from the start index to the builder, copying the runs between characters that need escaping as a whole
+     */
+    private static void escape(StringBuilder builder, CharSequence value, int start) {
+        int run = start;
+        for (int i = start; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < ESCAPES.length && ESCAPES[c] != null) {
+                builder.append(value, run, i).append(ESCAPES[c]);
+                run = i + 1;
+            }
+        }
+        builder.append(value, run, value.length());
+    }
+
+    private static void release(StringBuilder scratch, int start) {
+        scratch.setLength(start);
+        if (start == 0 && scratch.capacity() > MAX_SCRATCH_CAPACITY)
+            SCRATCH.set(new StringBuilder(256));
+    }
+}
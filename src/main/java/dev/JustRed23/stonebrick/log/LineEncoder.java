@@ -0,0 +1,95 @@
+package dev.JustRed23.stonebrick.log;
+
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Encodes lines into a reusable byte buffer and writes them to a stream once the buffer is full or {@link #end()} is called.
+ * Nothing is allocated while encoding. Not thread-safe, every writer owns its own encoder.
+ * <p>
+ * A full buffer can be written in the middle of a line, so callers hold the lock of the stream from appending until {@link #end()} when others write to it too.
+ */
+class LineEncoder {
+
+    private static final char[] LINE_SEPARATOR = System.lineSeparator().toCharArray();
+
+    private final PrintStream out;
+    private final CharsetEncoder encoder;
+    private final CharBuffer chars = CharBuffer.allocate(8192);
+    private final ByteBuffer bytes;
+    private boolean pending, drained;
+
+    LineEncoder(PrintStream out, Charset charset, int bufferSize) {
+        this.out = out;
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.bytes = ByteBuffer.allocate(bufferSize);
+    }
+
+    void append(CharSequence text) {
+        int position = 0, length = text.length();
+        while (position < length) {
+            int count = Math.min(chars.remaining(), length - position);
+            if (text instanceof StringBuilder builder)
+                builder.getChars(position, position + count, chars.array(), chars.position());
+            else for (int i = 0; i < count; i++)
+                chars.array()[chars.position() + i] = text.charAt(position + i);
+
+            chars.position(chars.position() + count);
+            position += count;
+            encode();
+        }
+        pending = true;
+    }
+
+    void newLine() {
+        chars.put(LINE_SEPARATOR);
+        encode();
+        pending = true;
+    }
+
+    boolean isPending() {
+        return pending;
+    }
+
+    /**
+     * @return If part of the current lines was already written to the stream because the buffer was full
+     */
+    boolean isDrained() {
+        return drained;
+    }
+
+    /**
+     * Writes everything encoded so far to the stream, without flushing the stream
+     */
+    void end() {
+        chars.flip();
+        while (encoder.encode(chars, bytes, true).isOverflow())
+            drain();
+        while (encoder.flush(bytes).isOverflow())
+            drain();
+        drain();
+
+        chars.clear();
+        encoder.reset();
+        pending = drained = false;
+    }
+
+    private void encode() {
+        chars.flip();
+        while (encoder.encode(chars, bytes, false).isOverflow())
+            drain();
+        chars.compact();
+    }
+
+    private void drain() {
+        out.write(bytes.array(), 0, bytes.position());
+        bytes.clear();
+        drained = true;
+    }
+}
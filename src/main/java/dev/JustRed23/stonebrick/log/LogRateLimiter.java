@@ -0,0 +1,115 @@
+package dev.JustRed23.stonebrick.log;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits how often the same message of one logger is written, every message format is a separate call site with its own budget per interval.
+ * <p>
+ * A call site allows {@code limit} messages per interval, everything above that is counted instead of written.
+ * The first message of the next interval reports how many were suppressed, counts of call sites that went quiet are reported by {@link #drain(boolean, Reporter)}.
+ */
+class LogRateLimiter {
+
+    //Messages built by concatenation instead of a format would otherwise grow the map forever
+    private static final int MAX_CALL_SITES = 1024;
+
+    private final int limit;
+    private final long interval;
+    private final Map<String, CallSite> sites = new ConcurrentHashMap<>();
+    private final AtomicLong nextEviction = new AtomicLong();
+
+    LogRateLimiter(int limit, long interval) {
+        this.limit = limit;
+        this.interval = interval;
+    }
+
+    /**
+     * @return -1 if the message should be suppressed, otherwise the amount of messages suppressed in the previous interval
+     */
+    long acquire(String format, LogLevel level) {
+        if (format == null)
+            return 0;
+
+        long now = System.currentTimeMillis();
+        CallSite site = sites.get(format);
+        if (site == null) {
+            if (sites.size() >= MAX_CALL_SITES && !evictIdle(now))
+                return 0;
+            site = sites.computeIfAbsent(format, f -> new CallSite(now));
+        }
+        return site.acquire(now, level);
+    }
+
+    /**
+     * Hands the suppressed counts of every call site whose interval ended to the reporter
+     * @param all Also report the counts of intervals that did not end yet, used on shutdown
+     */
+    void drain(boolean all, Reporter reporter) {
+        long now = System.currentTimeMillis();
+        sites.forEach((format, site) -> {
+            CallSite.Pending pending = site.drain(now, all);
+            if (pending != null)
+                reporter.report(pending.level, format, pending.suppressed);
+        });
+    }
+
+    //Removes the call sites that were not used for an interval, at most once per interval
+    private boolean evictIdle(long now) {
+        long next = nextEviction.get();
+        if (now < next || !nextEviction.compareAndSet(next, now + interval))
+            return false;
+
+        sites.entrySet().removeIf(entry -> entry.getValue().isIdle(now));
+        return sites.size() < MAX_CALL_SITES;
+    }
+
+    interface Reporter {
+        void report(LogLevel level, String format, long suppressed);
+    }
+
+    private class CallSite {
+        //Guarded by this
+        private long windowStart;
+        private int count;
+        private long suppressed;
+        private LogLevel level;
+
+        private CallSite(long now) {
+            this.windowStart = now;
+        }
+
+        private synchronized long acquire(long now, LogLevel level) {
+            long report = 0;
+            if (now - windowStart >= interval) {
+                windowStart = now;
+                count = 0;
+                report = suppressed;
+                suppressed = 0;
+            }
+
+            if (++count <= limit)
+                return report;
+
+            suppressed++;
+            this.level = level;
+            return -1;
+        }
+
+        private synchronized Pending drain(long now, boolean all) {
+            if (suppressed == 0 || (!all && now - windowStart < interval))
+                return null;
+
+            Pending pending = new Pending(level, suppressed);
+            suppressed = 0;
+            return pending;
+        }
+
+        private synchronized boolean isIdle(long now) {
+            return suppressed == 0 && now - windowStart >= interval;
+        }
+
+        private record Pending(LogLevel level, long suppressed) {}
+    }
+}
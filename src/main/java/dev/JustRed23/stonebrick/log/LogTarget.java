@@ -0,0 +1,16 @@
+package dev.JustRed23.stonebrick.log;
+
+/**
+ * Where the fallback logger writes its formatted lines to
+ */
+interface LogTarget {
+
+    void write(LogLevel level, CharSequence line, Throwable t);
+
+    /**
+     * Blocks until every line written before this call reached the underlying stream
+     */
+    default void flush() {}
+
+    default void close() {}
+}
@@ -0,0 +1,26 @@
+package dev.JustRed23.stonebrick.log;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * What the asynchronous logger does with a line when its buffer is full
+ */
+public enum OverflowPolicy {
+    /**
+     * The logging thread waits until the writer made room, no lines are lost
+     */
+    BLOCK,
+    /**
+     * The line is dropped and counted
+     */
+    DROP,
+    /**
+     * Lines below {@link LogLevel#WARN} are dropped, warnings and errors wait for room
+     */
+    DROP_BELOW_WARN;
+
+    public static OverflowPolicy translate(String raw) throws NoSuchElementException {
+        return Arrays.stream(OverflowPolicy.values()).filter(policy -> policy.name().equalsIgnoreCase(raw)).findFirst().orElseThrow();
+    }
+}
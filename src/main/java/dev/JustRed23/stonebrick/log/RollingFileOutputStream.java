@@ -0,0 +1,223 @@
+package dev.JustRed23.stonebrick.log;
+
+import org.slf4j.helpers.Util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Appends to a log file through a buffered {@link FileChannel}, rotating it once it exceeds a size or a new hour or day starts.
+ * <p>
+ * Bytes are only written to the file on {@link #flush()}, so a whole line or batch of lines is a single write.
+ * Rotated files are named after the active file with the date and an index, for example {@code app-2024-01-31-1.log},
+ * and are compressed and cleaned up on a background thread.
+ */
+class RollingFileOutputStream extends OutputStream {
+
+    private static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter HOUR = DateTimeFormatter.ofPattern("yyyy-MM-dd-HH");
+
+    private final Path file;
+    private final String baseName, extension;
+    //base-yyyy-MM-dd[-HH]-index.ext with an optional .gz, nothing else in the directory is touched
+    private final Pattern rotatedName;
+    private final long maxSize;
+    private final RotationInterval interval;
+    private final int maxFiles;
+    private final boolean compress;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    private final ExecutorService compressor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r);
+        t.setName("Log Compressor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private FileChannel channel;
+    private long size;
+    private ZonedDateTime periodStart;
+    private long nextRotation;
+
+    /**
+     * @param maxSize The size in bytes after which the file is rotated, 0 disables size based rotation
+     * @param maxFiles The amount of rotated files to keep, 0 keeps all of them
+     */
+    RollingFileOutputStream(String location, long maxSize, RotationInterval interval, int maxFiles, boolean compress) throws IOException {
+        this.file = Path.of(location).toAbsolutePath();
+        this.maxSize = maxSize;
+        this.interval = interval;
+        this.maxFiles = maxFiles;
+        this.compress = compress;
+
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        this.baseName = dot > 0 ? name.substring(0, dot) : name;
+        this.extension = dot > 0 ? name.substring(dot) : "";
+        this.rotatedName = Pattern.compile(Pattern.quote(baseName) + "-\\d{4}-\\d{2}-\\d{2}(?:-\\d{2})?-(\\d+)" + Pattern.quote(extension) + "(?:\\.gz)?");
+
+        if (file.getParent() != null)
+            Files.createDirectories(file.getParent());
+        open();
+        compressor.execute(this::cleanup);
+    }
+
+    public synchronized void write(int b) throws IOException {
+        if (!buffer.hasRemaining())
+            writeBuffer();
+        buffer.put((byte) b);
+    }
+
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        if (len > buffer.remaining())
+            writeBuffer();
+
+        if (len > buffer.capacity()) {
+            ByteBuffer data = ByteBuffer.wrap(b, off, len);
+            while (data.hasRemaining())
+                size += channel.write(data);
+        } else buffer.put(b, off, len);
+    }
+
+    public synchronized void flush() throws IOException {
+        if (nextRotation != 0 && System.currentTimeMillis() >= nextRotation)
+            rotate();
+
+        writeBuffer();
+
+        if (maxSize > 0 && size >= maxSize)
+            rotate();
+    }
+
+    public synchronized void close() throws IOException {
+        writeBuffer();
+        channel.close();
+        compressor.shutdown();
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            size += channel.write(buffer);
+        buffer.clear();
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        size = channel.size();
+        schedule();
+    }
+
+    private void schedule() {
+        ZonedDateTime now = ZonedDateTime.now();
+        ZonedDateTime next = interval.next(now);
+        periodStart = now;
+        nextRotation = next == null ? 0 : next.toInstant().toEpochMilli();
+    }
+
+    private void rotate() throws IOException {
+        if (size == 0) {
+            schedule();
+            return;
+        }
+
+        channel.close();
+
+        //Always count up from the newest segment, indexes freed by retention are not reused
+        String prefix = baseName + "-" + (interval == RotationInterval.HOURLY ? HOUR : DAY).format(periodStart) + "-";
+        File[] existing = file.getParent().toFile().listFiles((dir, name) -> name.startsWith(prefix) && isRotated(name));
+        int index = 0;
+        if (existing != null)
+            for (File segment : existing)
+                index = Math.max(index, indexOf(segment));
+        Path rotated = file.resolveSibling(prefix + (index + 1) + extension);
+
+        try {
+            Files.move(file, rotated);
+        } catch (IOException e) {
+            Util.report("Could not rotate log file `" + file + "´", e);
+        }
+
+        open();
+        compressor.execute(this::cleanup);
+    }
+
+    //Background
+    private void cleanup() {
+        File[] rotated = file.getParent().toFile().listFiles((dir, name) -> isRotated(name));
+        if (rotated == null)
+            return;
+
+        if (compress) {
+            for (File segment : rotated) {
+                if (!segment.getName().endsWith(".gz"))
+                    compress(segment.toPath());
+            }
+            rotated = file.getParent().toFile().listFiles((dir, name) -> isRotated(name));
+            if (rotated == null)
+                return;
+        }
+
+        if (maxFiles <= 0 || rotated.length <= maxFiles)
+            return;
+
+        Arrays.sort(rotated, Comparator.comparingLong(File::lastModified).thenComparingInt(this::indexOf));
+        for (int i = 0; i < rotated.length - maxFiles; i++) {
+            if (!rotated[i].delete())
+                Util.report("Could not delete old log file `" + rotated[i] + "´");
+        }
+    }
+
+    private boolean isRotated(String name) {
+        return rotatedName.matcher(name).matches();
+    }
+
+    private int indexOf(File segment) {
+        Matcher matcher = rotatedName.matcher(segment.getName());
+        try {
+            return matcher.matches() ? Integer.parseInt(matcher.group(1)) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private void compress(Path segment) {
+        Path target = Path.of(segment + ".gz");
+        Path temp = Path.of(target + ".tmp");
+        try (InputStream in = Files.newInputStream(segment);
+             OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp), 64 * 1024)) {
+            in.transferTo(out);
+        } catch (IOException e) {
+            Util.report("Could not compress log file `" + segment + "´", e);
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {}
+            return;
+        }
+
+        try {
+            Files.move(temp, target);
+            //Keep the date of the segment, retention sorts by it
+            target.toFile().setLastModified(segment.toFile().lastModified());
+            Files.delete(segment);
+        } catch (IOException e) {
+            Util.report("Could not compress log file `" + segment + "´", e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package dev.JustRed23.stonebrick.log;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * How often the log file is rotated regardless of its size
+ */
+public enum RotationInterval {
+    NONE(null),
+    HOURLY(ChronoUnit.HOURS),
+    DAILY(ChronoUnit.DAYS);
+
+    private final ChronoUnit unit;
+    RotationInterval(ChronoUnit unit) {
+        this.unit = unit;
+    }
+
+    /**
+     * @return The start of the period after the given time, or null if the file is never rotated by time
+     */
+    ZonedDateTime next(ZonedDateTime time) {
+        return unit == null ? null : time.truncatedTo(unit).plus(1, unit);
+    }
+
+    public static RotationInterval translate(String raw) throws NoSuchElementException {
+        return Arrays.stream(RotationInterval.values()).filter(interval -> interval.name().equalsIgnoreCase(raw)).findFirst().orElseThrow();
+    }
+}
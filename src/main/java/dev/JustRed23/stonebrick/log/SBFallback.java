@@ -1,44 +1,115 @@
 package dev.JustRed23.stonebrick.log;
 
 import org.jetbrains.annotations.NotNull;
-import org.slf4j.helpers.FormattingTuple;
+import org.jetbrains.annotations.VisibleForTesting;
 import org.slf4j.helpers.MarkerIgnoringBase;
-import org.slf4j.helpers.MessageFormatter;
 import org.slf4j.helpers.Util;
 
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import static dev.JustRed23.stonebrick.log.FallbackConfig.*;
 import static dev.JustRed23.stonebrick.log.LogLevel.*;
 
 class SBFallback extends MarkerIgnoringBase {
 
-    private static boolean INITIALIZED = false;
+    private static volatile boolean INITIALIZED = false;
 
-    private static PrintStream TARGET;
-    private static DateFormat DATE_FORMATTER;
+    private static LogTarget TARGET;
+    private static TimestampCache TIMESTAMP;
+    private static FlightRecorder RECORDER;
+
+    //An idle builder is always empty, a non-empty one means the thread is logging from inside a toString
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+    private static final int MAX_BUILDER_CAPACITY = 16 * 1024;
 
     private static LogLevel defaultLevel = INFO;
+    //Levels by logger name or package prefix, replaced as a whole on every change
+    private static Map<String, LogLevel> levels = Map.of();
+    private static final Queue<SBFallback> INSTANCES = new ConcurrentLinkedQueue<>();
+
+    private final String fullName;
+    private volatile int threshold;
+    private final LogRateLimiter limiter;
 
     SBFallback(String name) {
+        this(name, name);
+    }
+
+    /**
+     * @param name The name that is shown in the log
+     * @param fullName The name used to find the level of this logger, like the fully qualified class name
+     */
+    SBFallback(String name, String fullName) {
         if (!INITIALIZED)
             init();
         this.name = name;
+        this.fullName = fullName;
+        this.limiter = LOG_RATE_LIMIT > 0 ? new LogRateLimiter(LOG_RATE_LIMIT, LOG_RATE_INTERVAL > 0 ? LOG_RATE_INTERVAL : 1000) : null;
+
+        synchronized (SBFallback.class) {
+            INSTANCES.add(this);
+            threshold = resolve(fullName).getLevel();
+        }
     }
 
-    static void init() {
+    static synchronized void init() {
+        if (!INITIALIZED)
+            init(getTarget(LOG_LOCATION));
+    }
+
+    /**
+     * Initializes the fallback logger with the given stream instead of {@link FallbackConfig#LOG_LOCATION}, used by the benchmarks
+     */
+    @VisibleForTesting
+    static synchronized void init(PrintStream stream) {
+        if (INITIALIZED)
+            return;
         INITIALIZED = true;
-        TARGET = getTarget(LOG_LOCATION);
-        defaultLevel = DEFAULT_LOG_LEVEL;
+        //JSON lines are always UTF-8, plain text uses the platform charset like System.out
+        Charset charset = JSON_FORMAT ? StandardCharsets.UTF_8 : Charset.defaultCharset();
+        TARGET = ASYNC ? new AsyncTarget(stream, charset, ASYNC_BUFFER_SIZE > 0 ? ASYNC_BUFFER_SIZE : 8192, OVERFLOW_POLICY != null ? OVERFLOW_POLICY : OverflowPolicy.BLOCK)
+                : new StreamTarget(stream, charset);
+        defaultLevel = DEFAULT_LOG_LEVEL != null ? DEFAULT_LOG_LEVEL : INFO;
+        levels = parseLevels(LOG_LEVELS);
+
+        if (FLIGHT_RECORDER)
+            RECORDER = new FlightRecorder(FLIGHT_RECORDER_SIZE > 0 ? FLIGHT_RECORDER_SIZE : 65536,
+                    FLIGHT_RECORDER_SECONDS > 0 ? FLIGHT_RECORDER_SECONDS : 30,
+                    FLIGHT_RECORDER_FILE != null ? FLIGHT_RECORDER_FILE : "flight-recorder.log");
+
+        if (LOG_RATE_LIMIT > 0) {
+            //Reports messages that were suppressed and not followed by another one of the same call site
+            long interval = LOG_RATE_INTERVAL > 0 ? LOG_RATE_INTERVAL : 1000;
+            ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r);
+                t.setName("Log Rate Limiter");
+                t.setDaemon(true);
+                return t;
+            });
+            reporter.scheduleWithFixedDelay(() -> reportSuppressed(false), interval, interval, TimeUnit.MILLISECONDS);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> reportSuppressed(true), "Log Rate Limiter Shutdown"));
+        }
 
         if (DATE_TIME_FORMAT != null) {
             try {
-                DATE_FORMATTER = new SimpleDateFormat(DATE_TIME_FORMAT);
+                //The old default was a SimpleDateFormat pattern where sss meant milliseconds
+                String pattern = DATE_TIME_FORMAT.equals("hh:mm:ss.sss") ? "hh:mm:ss.SSS" : DATE_TIME_FORMAT;
+                TIMESTAMP = new TimestampCache(DateTimeFormatter.ofPattern(pattern).withZone(ZoneId.systemDefault()));
             } catch (IllegalArgumentException e) {
                 Util.report("The specified date format is not valid.", e);
                 SHOW_DATE_TIME = false;
@@ -46,21 +117,170 @@ class SBFallback extends MarkerIgnoringBase {
         } else SHOW_DATE_TIME = false;
     }
 
-    private void write(StringBuilder builder, Throwable t) {
-        TARGET.println(builder);
-        if (t != null)
-            t.printStackTrace(TARGET);
-        TARGET.flush();
+    private static void reportSuppressed(boolean all) {
+        for (SBFallback logger : INSTANCES) {
+            if (logger.limiter != null)
+                logger.limiter.drain(all, logger::reportSuppressed);
+        }
+    }
+
+    private void reportSuppressed(LogLevel level, String message, long suppressed) {
+        format(level, "Suppressed {} messages like: {}", suppressed, message, null, 2, null);
+    }
+
+    private void write(LogLevel level, StringBuilder builder, Throwable t) {
+        TARGET.write(level, builder, t);
+    }
+
+    //LEVELS
+    /**
+     * Parses levels in the form {@code dev.JustRed23.stonebrick.net=DEBUG, dev.JustRed23.stonebrick.cache=WARN}
+     */
+    private static Map<String, LogLevel> parseLevels(String raw) {
+        if (raw == null || raw.isBlank())
+            return Map.of();
+
+        Map<String, LogLevel> parsed = new HashMap<>();
+        for (String entry : raw.split(",")) {
+            if (entry.isBlank())
+                continue;
+
+            int separator = entry.indexOf('=');
+            try {
+                if (separator == -1)
+                    throw new IllegalArgumentException("Missing level");
+                parsed.put(entry.substring(0, separator).trim(), LogLevel.translate(entry.substring(separator + 1).trim()));
+            } catch (RuntimeException e) {
+                Util.report("Invalid log level `" + entry.trim() + "´, expected name=LEVEL.", e);
+            }
+        }
+        return Map.copyOf(parsed);
+    }
+
+    /**
+     * @return The level of the closest configured parent package of the name, or the default level
+     */
+    private static LogLevel resolve(String name) {
+        for (String current = name; !current.isEmpty(); ) {
+            LogLevel level = levels.get(current);
+            if (level != null)
+                return level;
+
+            int dot = current.lastIndexOf('.');
+            current = dot == -1 ? "" : current.substring(0, dot);
+        }
+        return defaultLevel;
+    }
+
+    private static void apply() {
+        for (SBFallback logger : INSTANCES)
+            logger.threshold = resolve(logger.fullName).getLevel();
+    }
+
+    static synchronized void setLevel(String name, LogLevel level) {
+        Map<String, LogLevel> changed = new HashMap<>(levels);
+        if (level == null)
+            changed.remove(name);
+        else changed.put(name, level);
+        levels = Map.copyOf(changed);
+        apply();
+    }
+
+    static synchronized void reloadLevels() {
+        defaultLevel = DEFAULT_LOG_LEVEL != null ? DEFAULT_LOG_LEVEL : INFO;
+        levels = parseLevels(LOG_LEVELS);
+        apply();
+    }
+
+    static Path dumpFlightRecorder() {
+        return RECORDER != null ? RECORDER.dump() : null;
+    }
+
+    static void flush() {
+        if (TARGET != null)
+            TARGET.flush();
+    }
+
+    static long dropped(LogLevel level) {
+        return TARGET instanceof AsyncTarget async ? (level != null ? async.dropped(level) : async.dropped()) : 0;
     }
 
     public void log(LogLevel level, String message, Throwable t) {
-        if (!isLevelEnabled(level))
+        if (!isAccepted(level, message))
+            return;
+
+        format(level, message, null, null, null, -1, t);
+    }
+
+    public void formatAndLog(LogLevel level, String message, Object... args) {
+        if (!isAccepted(level, message))
+            return;
+
+        //Like slf4j, a trailing throwable is logged as the exception instead of used as an argument
+        Throwable t = args != null && args.length > 0 && args[args.length - 1] instanceof Throwable throwable ? throwable : null;
+        format(level, message, null, null, args, args == null ? 0 : t != null ? args.length - 1 : args.length, t);
+    }
+
+    private void formatAndLog(LogLevel level, String message, Object arg1, Object arg2, int count) {
+        if (!isAccepted(level, message))
             return;
 
-        StringBuilder builder = new StringBuilder(32);
+        Object last = count == 2 ? arg2 : arg1;
+        Throwable t = last instanceof Throwable throwable ? throwable : null;
+        format(level, message, arg1, arg2, null, t != null ? count - 1 : count, t);
+    }
+
+    //Events below the level are only passed on to the flight recorder, only events that are written count against the rate limit
+    private boolean isAccepted(LogLevel level, String message) {
+        if (isLevelEnabled(level))
+            return !isSuppressed(level, message);
+        return RECORDER != null;
+    }
+
+    private boolean isSuppressed(LogLevel level, String message) {
+        if (limiter == null)
+            return false;
+
+        long suppressed = limiter.acquire(message, level);
+        if (suppressed > 0)
+            reportSuppressed(level, message, suppressed);
+        return suppressed < 0;
+    }
+
+    /**
+     * @param count The amount of arguments, -1 if the message is not a format
+     */
+    private void format(LogLevel level, String message, Object arg1, Object arg2, Object[] args, int count, Throwable t) {
+        if (RECORDER != null) {
+            RECORDER.record(this, level, message, arg1, arg2, args, count, t);
+            if (level == ERROR && FLIGHT_RECORDER_DUMP_ON_ERROR)
+                RECORDER.dumpAsync();
+            if (level.getLevel() < threshold)
+                return;
+        }
+
+        StringBuilder builder = builder();
+        try {
+            if (JSON_FORMAT) {
+                JsonLayout.append(builder, level, fullName, message, arg1, arg2, args, count, t);
+                write(level, builder, null);
+                return;
+            }
 
+            appendPrefix(builder, level);
+            if (count < 0)
+                builder.append(message);
+            else appendFormatted(builder, message, arg1, arg2, args, count);
+            write(level, builder, t);
+        } finally {
+            release(builder);
+        }
+    }
+
+    //FORMATTING
+    private void appendPrefix(StringBuilder builder, LogLevel level) {
         if (SHOW_DATE_TIME)
-            builder.append(DATE_FORMATTER.format(new Date())).append(' ');
+            builder.append(TIMESTAMP.now()).append(' ');
 
         if (SHOW_THREAD_NAME)
             builder.append('[')
@@ -73,16 +293,72 @@ class SBFallback extends MarkerIgnoringBase {
 
         if (SHOW_LOG_NAME)
             builder.append(name).append(" - ");
-
-        builder.append(message);
-        write(builder, t);
     }
 
-    public void formatAndLog(LogLevel level, String message, Object... args) {
-        if (!isLevelEnabled(level))
+    /**
+     * Replaces every {} in the message with the next argument, the same way slf4j does, but directly into the builder
+     */
+    static void appendFormatted(StringBuilder builder, String message, Object arg1, Object arg2, Object[] args, int count) {
+        if (message == null) {
+            builder.append((String) null);
             return;
-        FormattingTuple ft = MessageFormatter.arrayFormat(message, args);
-        log(level, ft.getMessage(), ft.getThrowable());
+        }
+
+        int start = 0, used = 0;
+        while (used < count) {
+            int index = message.indexOf("{}", start);
+            if (index == -1)
+                break;
+
+            if (index > 0 && message.charAt(index - 1) == '\\') {
+                if (index > 1 && message.charAt(index - 2) == '\\') {
+                    //Escaped backslash, the placeholder is still replaced
+                    builder.append(message, start, index - 1);
+                } else {
+                    //Escaped placeholder, kept as is
+                    builder.append(message, start, index - 1).append("{}");
+                    start = index + 2;
+                    continue;
+                }
+            } else builder.append(message, start, index);
+
+            appendArgument(builder, args != null ? args[used] : used == 0 ? arg1 : arg2);
+            used++;
+            start = index + 2;
+        }
+        builder.append(message, start, message.length());
+    }
+
+    static void appendArgument(StringBuilder builder, Object arg) {
+        try {
+            if (arg instanceof CharSequence sequence)
+                builder.append(sequence);
+            else if (arg instanceof Integer i)
+                builder.append(i.intValue());
+            else if (arg instanceof Long l)
+                builder.append(l.longValue());
+            else if (arg instanceof Object[] array)
+                builder.append(Arrays.deepToString(array));
+            else if (arg != null && arg.getClass().isArray()) {
+                //Primitive array, unwrapped from the one element array around it
+                String array = Arrays.deepToString(new Object[]{arg});
+                builder.append(array, 1, array.length() - 1);
+            } else builder.append(arg);
+        } catch (Throwable t) {
+            Util.report("SLF4J: Failed toString() invocation on an object of type [" + arg.getClass().getName() + "]", t);
+            builder.append("[FAILED toString()]");
+        }
+    }
+
+    private static StringBuilder builder() {
+        StringBuilder builder = BUILDER.get();
+        return builder.isEmpty() ? builder : new StringBuilder(256);
+    }
+
+    private static void release(StringBuilder builder) {
+        builder.setLength(0);
+        if (builder.capacity() > MAX_BUILDER_CAPACITY && BUILDER.get() == builder)
+            BUILDER.set(new StringBuilder(256));
     }
 
     //IMPLEMENTED FROM MarkerIgnoringBase
@@ -91,11 +367,11 @@ class SBFallback extends MarkerIgnoringBase {
     }
 
     public void trace(String format, Object arg) {
-        formatAndLog(TRACE, format, arg);
+        formatAndLog(TRACE, format, arg, null, 1);
     }
 
     public void trace(String format, Object arg1, Object arg2) {
-        formatAndLog(TRACE, format, arg1, arg2);
+        formatAndLog(TRACE, format, arg1, arg2, 2);
     }
 
     public void trace(String format, Object... arguments) {
@@ -111,11 +387,11 @@ class SBFallback extends MarkerIgnoringBase {
     }
 
     public void debug(String format, Object arg) {
-        formatAndLog(DEBUG, format, arg);
+        formatAndLog(DEBUG, format, arg, null, 1);
     }
 
     public void debug(String format, Object arg1, Object arg2) {
-        formatAndLog(DEBUG, format, arg1, arg2);
+        formatAndLog(DEBUG, format, arg1, arg2, 2);
     }
 
     public void debug(String format, Object... arguments) {
@@ -131,11 +407,11 @@ class SBFallback extends MarkerIgnoringBase {
     }
 
     public void info(String format, Object arg) {
-        formatAndLog(INFO, format, arg);
+        formatAndLog(INFO, format, arg, null, 1);
     }
 
     public void info(String format, Object arg1, Object arg2) {
-        formatAndLog(INFO, format, arg1, arg2);
+        formatAndLog(INFO, format, arg1, arg2, 2);
     }
 
     public void info(String format, Object... arguments) {
@@ -151,11 +427,11 @@ class SBFallback extends MarkerIgnoringBase {
     }
 
     public void warn(String format, Object arg) {
-        formatAndLog(WARN, format, arg);
+        formatAndLog(WARN, format, arg, null, 1);
     }
 
     public void warn(String format, Object arg1, Object arg2) {
-        formatAndLog(WARN, format, arg1, arg2);
+        formatAndLog(WARN, format, arg1, arg2, 2);
     }
 
     public void warn(String format, Object... argArray) {
@@ -171,11 +447,11 @@ class SBFallback extends MarkerIgnoringBase {
     }
 
     public void error(String format, Object arg) {
-        formatAndLog(ERROR, format, arg);
+        formatAndLog(ERROR, format, arg, null, 1);
     }
 
     public void error(String format, Object arg1, Object arg2) {
-        formatAndLog(ERROR, format, arg1, arg2);
+        formatAndLog(ERROR, format, arg1, arg2, 2);
     }
 
     public void error(String format, Object... argArray) {
@@ -197,9 +473,14 @@ class SBFallback extends MarkerIgnoringBase {
             }
             default -> {
                 try {
-                    return new PrintStream(new FileOutputStream(location));
-                } catch (FileNotFoundException e) {
-                    Util.report("Could not find `" + location + "´. Defaulting to error stream.", e);
+                    //Rotation is opt-in, without it the file is written like before
+                    RotationInterval rotation = LOG_ROTATION != null ? LOG_ROTATION : RotationInterval.NONE;
+                    if (LOG_MAX_SIZE <= 0 && rotation == RotationInterval.NONE)
+                        return new PrintStream(new FileOutputStream(location));
+
+                    return new PrintStream(new RollingFileOutputStream(location, LOG_MAX_SIZE, rotation, LOG_MAX_FILES, LOG_COMPRESS));
+                } catch (IOException e) {
+                    Util.report("Could not open `" + location + "´. Defaulting to error stream.", e);
                     return System.err;
                 }
             }
@@ -207,7 +488,7 @@ class SBFallback extends MarkerIgnoringBase {
     }
 
     private boolean isLevelEnabled(@NotNull LogLevel level) {
-        return level.getLevel() >= defaultLevel.getLevel();
+        return level.getLevel() >= threshold;
     }
 
     public boolean isTraceEnabled() {
@@ -1,14 +1,18 @@
 package dev.JustRed23.stonebrick.log;
 
-import org.apache.commons.collections4.map.CaseInsensitiveMap;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.Locale;
 import java.util.Map;
 import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 public class SBLogger {
 
@@ -31,35 +35,126 @@ public class SBLogger {
         SLF4J_ENABLED = slf4jEnabled;
     }
 
-    private static final Map<String, Logger> LOGGERS = new CaseInsensitiveMap<>();
+    //Loggers by the exact name they were requested with, backed by the case-insensitive registry
+    private static final Map<String, Logger> LOGGERS = new ConcurrentHashMap<>();
+    private static final Map<String, Logger> REGISTRY = new ConcurrentHashMap<>();
 
     public static Logger getLogger(String name) {
-        synchronized (LOGGERS) {
-            return SLF4J_ENABLED ? LoggerFactory.getLogger(name)
-                    : LOGGERS.computeIfAbsent(name, SBFallback::new);
-        }
+        if (SLF4J_ENABLED)
+            return LoggerFactory.getLogger(name);
+
+        Logger logger = LOGGERS.get(name);
+        return logger != null ? logger : register(name, () -> new SBFallback(name));
     }
 
     public static Logger getLogger(Class<?> clazz) {
-        synchronized (LOGGERS) {
-            return SLF4J_ENABLED ?
-                    LoggerFactory.getLogger(clazz)
-                    : LOGGERS.computeIfAbsent(clazz.getName(), s -> new SBFallback(clazz.getSimpleName()));
+        if (SLF4J_ENABLED)
+            return LoggerFactory.getLogger(clazz);
+
+        Logger logger = LOGGERS.get(clazz.getName());
+        return logger != null ? logger : register(clazz.getName(), () -> new SBFallback(clazz.getSimpleName(), clazz.getName()));
+    }
+
+    private static Logger register(String name, Supplier<Logger> factory) {
+        Logger logger = REGISTRY.computeIfAbsent(name.toLowerCase(Locale.ROOT), s -> factory.get());
+        LOGGERS.putIfAbsent(name, logger);
+        return logger;
+    }
+
+    /**
+     * Changes the level of a fallback logger and every logger in the package with that name at runtime.
+     * Does nothing when an slf4j binding is present ({@link #SLF4J_ENABLED}), levels are then configured through the binding.
+     * @param name The logger or package name, like {@code dev.JustRed23.stonebrick.net}
+     * @param level The new level, or null to use the level of the parent package again
+     */
+    public static void setLevel(@NotNull String name, @Nullable LogLevel level) {
+        if (!SLF4J_ENABLED)
+            SBFallback.setLevel(name, level);
+    }
+
+    /**
+     * Applies {@link FallbackConfig#DEFAULT_LOG_LEVEL} and {@link FallbackConfig#LOG_LEVELS} again after the config changed,
+     * levels changed with {@link #setLevel(String, LogLevel)} are discarded. Does nothing when an slf4j binding is present.
+     */
+    public static void reloadLevels() {
+        if (!SLF4J_ENABLED)
+            SBFallback.reloadLevels();
+    }
+
+    /**
+     * Blocks until every line logged before this call was written, only has an effect on the asynchronous fallback logger
+     */
+    public static void flush() {
+        if (!SLF4J_ENABLED)
+            SBFallback.flush();
+    }
+
+    /**
+     * Writes the events recorded by the flight recorder to a new file
+     * @return The file, or null if the flight recorder is disabled or recorded nothing
+     * @see FallbackConfig#FLIGHT_RECORDER
+     */
+    public static @Nullable Path dumpFlightRecorder() {
+        return SLF4J_ENABLED ? null : SBFallback.dumpFlightRecorder();
+    }
+
+    /**
+     * @return The amount of lines the asynchronous fallback logger dropped because its buffer was full
+     */
+    public static long getDroppedEvents() {
+        return SLF4J_ENABLED ? 0 : SBFallback.dropped(null);
+    }
+
+    public static long getDroppedEvents(@NotNull LogLevel level) {
+        return SLF4J_ENABLED ? 0 : SBFallback.dropped(level);
+    }
+
+    public static boolean isEnabled(@NotNull Logger logger, @NotNull LogLevel level) {
+        return switch (level) {
+            case TRACE -> logger.isTraceEnabled();
+            case DEBUG -> logger.isDebugEnabled();
+            case INFO -> logger.isInfoEnabled();
+            case WARN -> logger.isWarnEnabled();
+            case ERROR -> logger.isErrorEnabled();
+        };
+    }
+
+    /**
+     * Only evaluates the message when the level is enabled, when it is disabled nothing is allocated as long as the lambda captures no variables.
+     */
+    public static void log(@NotNull Logger logger, @NotNull LogLevel level, @NotNull LazyCalculation message) {
+        if (!isEnabled(logger, level))
+            return;
+
+        String evaluated = evaluate(message);
+        switch (level) {
+            case TRACE -> logger.trace(evaluated);
+            case DEBUG -> logger.debug(evaluated);
+            case INFO -> logger.info(evaluated);
+            case WARN -> logger.warn(evaluated);
+            case ERROR -> logger.error(evaluated);
         }
     }
 
+    /**
+     * @see #log(Logger, LogLevel, LazyCalculation) which skips the allocation when the level is disabled
+     */
     @NotNull
     public static Object lazy(LazyCalculation lazyCalculation) {
         return new Object() {
             public String toString() {
-                try {
-                    return lazyCalculation.getString();
-                } catch (Exception ex) {
-                    StringWriter sw = new StringWriter();
-                    ex.printStackTrace(new PrintWriter(sw));
-                    return "Error while evaluating lazy String... " + sw;
-                }
+                return evaluate(lazyCalculation);
             }
         };
     }
+
+    private static String evaluate(LazyCalculation lazyCalculation) {
+        try {
+            return lazyCalculation.getString();
+        } catch (Exception ex) {
+            StringWriter sw = new StringWriter();
+            ex.printStackTrace(new PrintWriter(sw));
+            return "Error while evaluating lazy String... " + sw;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,33 @@
+package dev.JustRed23.stonebrick.log;
+
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+
+/**
+ * Writes every line directly on the calling thread
+ */
+class StreamTarget implements LogTarget {
+
+    private final PrintStream out;
+    private final LineEncoder encoder;
+
+    StreamTarget(PrintStream out, Charset charset) {
+        this.out = out;
+        this.encoder = new LineEncoder(out, charset, 8192);
+    }
+
+    public void write(LogLevel level, CharSequence line, Throwable t) {
+        synchronized (out) {
+            encoder.append(line);
+            encoder.newLine();
+            encoder.end();
+            if (t != null)
+                t.printStackTrace(out);
+            out.flush();
+        }
+    }
+
+    public void flush() {
+        out.flush();
+    }
+}
@@ -0,0 +1,29 @@
+package dev.JustRed23.stonebrick.log;
+
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Formats the current time at most once per millisecond, every log call within the same millisecond reuses the text
+ */
+class TimestampCache {
+
+    private final DateTimeFormatter formatter;
+    private volatile Timestamp last = new Timestamp(Long.MIN_VALUE, "");
+
+    TimestampCache(DateTimeFormatter formatter) {
+        this.formatter = formatter;
+    }
+
+    String now() {
+        long now = System.currentTimeMillis();
+        Timestamp timestamp = last;
+        if (timestamp.millis != now) {
+            timestamp = new Timestamp(now, formatter.format(Instant.ofEpochMilli(now)));
+            last = timestamp;
+        }
+        return timestamp.text;
+    }
+
+    private record Timestamp(long millis, String text) {}
+}
@@ -0,0 +1,19 @@
+package dev.JustRed23.stonebrick.net;
+
+import dev.JustRed23.stonebrick.exceptions.NetRequestException;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The outcome of a single request in a {@link BatchRequest}
+ * @param index The position of the request in the batch
+ * @param request The request that was sent
+ * @param response The response, or null if the request failed
+ * @param exception The exception, or null if a response was received
+ * @param nanos The time in nanoseconds the request took
+ */
+public record BatchEntry(int index, RequestBuilder request, @Nullable Response response, @Nullable NetRequestException exception, long nanos) {
+
+    public boolean isSuccess() {
+        return exception == null && response != null && response.isSuccess();
+    }
+}
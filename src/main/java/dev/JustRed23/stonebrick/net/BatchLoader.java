@@ -0,0 +1,168 @@
+package dev.JustRed23.stonebrick.net;
+
+import dev.JustRed23.stonebrick.exceptions.NetRequestException;
+import dev.JustRed23.stonebrick.exceptions.NetResponseException;
+import dev.JustRed23.stonebrick.util.CommonThreads;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Range;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Combines single key lookups into batched requests for endpoints that accept multiple keys, like {@code ?ids=1,2,3}.
+ * <p>
+ * Keys are collected until the batch window passes or the batch is full, then one request is sent for all of them and the result is split back to every caller.
+ * Loading the same key twice within one batch only requests it once.
+ * <pre>{@code
+ * BatchLoader<Integer, JSONObject> users = new BatchLoader<>(
+ *         ids -> NetworkManager.get("https://example.com/users?ids=%s", ids.stream().map(String::valueOf).collect(Collectors.joining(","))),
+ *         (ids, response) -> ...);
+ * users.load(23).thenAccept(user -> ...);
+ * }</pre>
+ */
+public class BatchLoader<K, V> {
+
+    private final Function<List<K>, RequestBuilder> request;
+    private final Splitter<K, V> splitter;
+
+    private long window;
+    private int maxBatchSize;
+
+    private final Object LOCK = new Object();
+    private Map<K, CompletableFuture<V>> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    /**
+     * @param request Creates the request for a batch of keys
+     * @param splitter Splits the response of a batch into the value of every key
+     */
+    public BatchLoader(@NotNull Function<List<K>, RequestBuilder> request, @NotNull Splitter<K, V> splitter) {
+        this.request = request;
+        this.splitter = splitter;
+        this.window = NetworkConfig.LOADER_WINDOW;
+        this.maxBatchSize = NetworkConfig.LOADER_MAX_BATCH > 0 ? NetworkConfig.LOADER_MAX_BATCH : 100;
+    }
+
+    /**
+     * The time in milliseconds keys are collected before a batch is sent
+     */
+    public BatchLoader<K, V> window(@Range(from = 0, to = Long.MAX_VALUE) long window) {
+        this.window = window;
+        return this;
+    }
+
+    /**
+     * The maximum amount of keys in one request, a full batch is sent immediately
+     */
+    public BatchLoader<K, V> maxBatchSize(@Range(from = 1, to = Integer.MAX_VALUE) int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    /**
+     * @return A future that completes with the value of the key, or null if the response contained no value for it
+     */
+    public CompletableFuture<V> load(@NotNull K key) {
+        Map<K, CompletableFuture<V>> batch = null;
+        CompletableFuture<V> future;
+
+        synchronized (LOCK) {
+            future = pending.get(key);
+            if (future != null)
+                return future;
+
+            future = new CompletableFuture<>();
+            pending.put(key, future);
+
+            if (pending.size() >= maxBatchSize)
+                batch = take();
+            else if (pending.size() == 1)
+                scheduledFlush = CommonThreads.scheduledThread.schedule(this::flush, window, TimeUnit.MILLISECONDS);
+        }
+
+        if (batch != null)
+            send(batch);
+        return future;
+    }
+
+    public CompletableFuture<Map<K, V>> loadAll(@NotNull Collection<K> keys) {
+        Map<K, CompletableFuture<V>> futures = new LinkedHashMap<>();
+        for (K key : keys)
+            futures.put(key, load(key));
+
+        return CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new)).thenApply(ignored -> {
+            Map<K, V> result = new LinkedHashMap<>();
+            futures.forEach((key, future) -> result.put(key, future.join()));
+            return result;
+        });
+    }
+
+    /**
+     * Sends the keys collected so far without waiting for the window to pass
+     */
+    public void flush() {
+        Map<K, CompletableFuture<V>> batch;
+        synchronized (LOCK) {
+            if (pending.isEmpty())
+                return;
+            batch = take();
+        }
+        send(batch);
+    }
+
+    private Map<K, CompletableFuture<V>> take() {
+        Map<K, CompletableFuture<V>> batch = pending;
+        pending = new LinkedHashMap<>();
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    private void send(Map<K, CompletableFuture<V>> batch) {
+        List<K> keys = new ArrayList<>(batch.keySet());
+        try {
+            request.apply(keys).async(new Callback() {
+                public void response(Request request, Response response, NetRequestException e) {
+                    if (e != null) {
+                        fail(batch, e);
+                        return;
+                    }
+
+                    try {
+                        Map<K, V> values = splitter.split(keys, response.throwIfNotSuccess());
+                        batch.forEach((key, future) -> future.complete(values.get(key)));
+                    } catch (Exception ex) {
+                        fail(batch, ex instanceof NetResponseException ? ex : new NetResponseException(response, ex));
+                    } finally {
+                        //Releases a spilled body, the values were already taken from it
+                        response.close();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            fail(batch, e);
+        }
+    }
+
+    private void fail(Map<K, CompletableFuture<V>> batch, Throwable t) {
+        batch.values().forEach(future -> future.completeExceptionally(t));
+    }
+
+    /**
+     * Splits the response of a batch, the response is closed once this returns so the values must not read from it later
+     */
+    @FunctionalInterface
+    public interface Splitter<K, V> {
+        Map<K, V> split(List<K> keys, Response response) throws Exception;
+    }
+}
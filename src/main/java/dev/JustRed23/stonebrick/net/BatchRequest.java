@@ -0,0 +1,96 @@
+package dev.JustRed23.stonebrick.net;
+
+import dev.JustRed23.stonebrick.exceptions.NetRequestException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Range;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Sends a collection of requests with a bounded amount of requests in flight.
+ * <p>
+ * Results are passed to the caller in the order the requests complete, on the thread that called {@link #execute(Consumer)}.
+ */
+public class BatchRequest {
+
+    private final List<RequestBuilder> requests;
+    private int parallelism;
+
+    protected BatchRequest(@NotNull Collection<RequestBuilder> requests) {
+        this.requests = new ArrayList<>(requests);
+        this.parallelism = NetworkConfig.BATCH_PARALLELISM > 0 ? NetworkConfig.BATCH_PARALLELISM : 16;
+    }
+
+    /**
+     * The maximum amount of requests of this batch in flight at the same time
+     */
+    public BatchRequest parallelism(@Range(from = 1, to = Integer.MAX_VALUE) int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public BatchResult execute() throws InterruptedException {
+        return execute(entry -> {});
+    }
+
+    /**
+     * Sends all requests and waits until they are completed
+     * @param onResult Called for every request as soon as it completes
+     * @return The aggregated result of the batch
+     * @throws InterruptedException If the calling thread is interrupted, requests that have not started yet are not sent
+     */
+    public BatchResult execute(@NotNull Consumer<BatchEntry> onResult) throws InterruptedException {
+        BatchResult result = new BatchResult(requests.size());
+        if (requests.isEmpty())
+            return result;
+
+        final AtomicInteger threadId = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, requests.size()), r -> {
+            Thread t = new Thread(r);
+            t.setName("Batch Thread " + threadId.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        long start = System.nanoTime();
+        try {
+            CompletionService<BatchEntry> completion = new ExecutorCompletionService<>(executor);
+            for (int i = 0; i < requests.size(); i++) {
+                final int index = i;
+                final RequestBuilder builder = requests.get(i);
+                completion.submit(() -> {
+                    long begin = System.nanoTime();
+                    try {
+                        Response response = builder.blocking();
+                        return new BatchEntry(index, builder, response, null, System.nanoTime() - begin);
+                    } catch (NetRequestException e) {
+                        return new BatchEntry(index, builder, null, e, System.nanoTime() - begin);
+                    }
+                });
+            }
+
+            for (int i = 0; i < requests.size(); i++) {
+                try {
+                    BatchEntry entry = completion.take().get();
+                    result.add(entry);
+                    onResult.accept(entry);
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Batch request failed unexpectedly", e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            result.finish(System.nanoTime() - start);
+        }
+        return result;
+    }
+}
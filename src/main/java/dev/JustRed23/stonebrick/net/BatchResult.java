@@ -0,0 +1,89 @@
+package dev.JustRed23.stonebrick.net;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Aggregated outcome of a {@link BatchRequest}
+ */
+public class BatchResult {
+
+    private final int total;
+    private int succeeded;
+    private final List<BatchEntry> failures = new ArrayList<>();
+
+    private long elapsedNanos;
+    private long totalNanos;
+    private long minNanos = Long.MAX_VALUE;
+    private long maxNanos;
+
+    BatchResult(int total) {
+        this.total = total;
+    }
+
+    void add(BatchEntry entry) {
+        if (entry.isSuccess())
+            succeeded++;
+        else failures.add(entry);
+
+        totalNanos += entry.nanos();
+        minNanos = Math.min(minNanos, entry.nanos());
+        maxNanos = Math.max(maxNanos, entry.nanos());
+    }
+
+    void finish(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int total() {
+        return total;
+    }
+
+    public int completed() {
+        return succeeded + failures.size();
+    }
+
+    public int succeeded() {
+        return succeeded;
+    }
+
+    public int failed() {
+        return failures.size();
+    }
+
+    /**
+     * @return Every request that did not complete with a successful response, in completion order
+     */
+    public List<BatchEntry> failures() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    /**
+     * @return The wall clock time in nanoseconds the whole batch took
+     */
+    public long elapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public long minNanos() {
+        return completed() == 0 ? 0 : minNanos;
+    }
+
+    public long maxNanos() {
+        return maxNanos;
+    }
+
+    public long averageNanos() {
+        return completed() == 0 ? 0 : totalNanos / completed();
+    }
+
+    public double requestsPerSecond() {
+        return elapsedNanos == 0 ? 0 : completed() / (elapsedNanos / 1_000_000_000d);
+    }
+
+    public String toString() {
+        return String.format("%d/%d succeeded, %d failed in %d ms (avg %d ms, max %d ms)",
+                succeeded, total, failed(), elapsedNanos / 1_000_000, averageNanos() / 1_000_000, maxNanos / 1_000_000);
+    }
+}
@@ -2,10 +2,27 @@ package dev.JustRed23.stonebrick.net;
 
 import dev.JustRed23.stonebrick.exceptions.NetRequestException;
 
+import java.io.File;
+
 public abstract class Callback {
 
     public boolean cancellable;
 
     public abstract void response(Request request, Response response, NetRequestException e);
     public void progress(Request request, int current, int total, int percent) {}
+
+    /**
+     * Called instead of {@link #response(Request, Response, NetRequestException)} when a {@link SegmentedDownload} completes
+     * @param file The downloaded file
+     */
+    public void downloaded(Request request, File file) {}
+
+    /**
+     * Inline callbacks receive every progress update directly on the thread that reads the response, instead of the latest update on a network thread.
+     * <p>
+     * Only return true if {@link #progress(Request, int, int, int)} is cheap and never blocks.
+     */
+    public boolean inlineProgress() {
+        return false;
+    }
 }
\ No newline at end of file
@@ -14,10 +14,20 @@ public class CallbackCollection {
     private Request first;
     private int percentage = -1;
 
+    private static final Callback[] NONE = new Callback[0];
+    private Callback[] inlineCallbacks = NONE, queuedCallbacks = NONE;
+    private boolean dispatchPending;
+    private Request latestRequest;
+    private int latestCurrent, latestTotal;
+
     public CallbackCollection() {
         callbacks = new ArrayList<>();
     }
 
+    /**
+     * @deprecated Requests are no longer registered by this string, the {@link NetworkManager} deduplicates them by method, url and body
+     */
+    @Deprecated
     public static String create(Request request) {
         return String.format("%s\0%s\0%s",
                 request.method().name(),
@@ -26,16 +36,22 @@ public class CallbackCollection {
         );
     }
 
-    public void addCallback(Callback callback, Request request) {
+    /**
+     * Adds a callback to this collection
+     * @return false if the collection has already completed and the callback was not added
+     */
+    public boolean addCallback(Callback callback, Request request) {
         synchronized (LOCK) {
             if (callbacks == null)
-                throw new IllegalStateException("CallbackCollection is already completed");
+                return false;
 
             callback.cancellable = request.isCancellable();
             callbacks.add(callback);
+            splitCallbacks();
 
             if (first == null)
                 first = request;
+            return true;
         }
     }
 
@@ -44,29 +60,72 @@ public class CallbackCollection {
             if (callbacks == null)
                 throw new IllegalStateException("CallbackCollection is already completed");
 
-            callbacks.forEach(callback -> CommonThreads.networkThread.execute(() -> callback.response(first, response, e)));
+            //Every callback gets its own handle, so one closing a spilled body does not delete it under the others.
+            //The handles are created before any callback runs, as a callback may close the response right away
+            Response[] handles = new Response[callbacks.size()];
+            for (int i = 0; i < handles.length; i++)
+                handles[i] = response != null && i > 0 ? response.share() : response;
+
+            for (int i = 0; i < handles.length; i++) {
+                final Callback callback = callbacks.get(i);
+                final Response handle = handles[i];
+                CommonThreads.networkThread.execute(() -> callback.response(first, handle, e));
+            }
             callbacks.clear();
             callbacks = null;
         }
     }
 
     public void onProgress(Request request, int current, int total) {
+        Callback[] inline;
+        int percent = (int) (((double) current / (double) total) * 100);
+
         synchronized (LOCK) {
+            if (callbacks == null || percent == percentage)
+                return;
+
+            percentage = percent;
+            latestRequest = request;
+            latestCurrent = current;
+            latestTotal = total;
+
+            //Coalesce updates, the dispatch task delivers whatever is the latest update when it runs
+            if (!dispatchPending && queuedCallbacks.length > 0) {
+                dispatchPending = true;
+                CommonThreads.networkThread.execute(this::dispatchProgress);
+            }
+            inline = inlineCallbacks;
+        }
+
+        for (Callback callback : inline)
+            callback.progress(request, current, total, percent);
+    }
+
+    private void dispatchProgress() {
+        Callback[] queued;
+        Request request;
+        int current, total, percent;
+
+        synchronized (LOCK) {
+            dispatchPending = false;
             if (callbacks == null)
-                throw new IllegalStateException("CallbackCollection is already completed");
+                return;
 
-            int percent = (int) (((double) current / (double) total) * 100);
-            if (percent != percentage) {
-                percentage = percent;
-                callbacks.forEach(callback -> CommonThreads.networkThread.execute(() -> callback.progress(request, current, total, percent)));
-            }
+            queued = queuedCallbacks;
+            request = latestRequest;
+            current = latestCurrent;
+            total = latestTotal;
+            percent = percentage;
         }
+
+        for (Callback callback : queued)
+            callback.progress(request, current, total, percent);
     }
 
     public boolean cancel(boolean force) {
         synchronized (LOCK) {
             if (callbacks == null)
-                throw new IllegalStateException("CallbackCollection is already completed");
+                return true;
 
             Iterator<Callback> iterator = callbacks.iterator();
             while (iterator.hasNext()) {
@@ -77,6 +136,7 @@ public class CallbackCollection {
                 }
             }
 
+            splitCallbacks();
             if (callbacks.size() == 0) {
                 first.cancelCallback = true;
                 first.cancel(force);
@@ -86,6 +146,11 @@ public class CallbackCollection {
         }
     }
 
+    private void splitCallbacks() {
+        inlineCallbacks = callbacks.stream().filter(Callback::inlineProgress).toArray(Callback[]::new);
+        queuedCallbacks = callbacks.stream().filter(callback -> !callback.inlineProgress()).toArray(Callback[]::new);
+    }
+
     public int size() {
         synchronized (LOCK) {
             return callbacks == null ? -1 : callbacks.size();
@@ -0,0 +1,13 @@
+package dev.JustRed23.stonebrick.net;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A single event received by an {@link EventStream}
+ * @param id The last event id sent by the server, or null if none was sent
+ * @param type The event type, {@code message} when the server did not set one
+ * @param data The data of the event, multiple data lines are joined with a newline
+ */
+public record Event(@Nullable String id, @NotNull String type, @NotNull String data) {
+}
@@ -0,0 +1,19 @@
+package dev.JustRed23.stonebrick.net;
+
+/**
+ * Handles the events of an {@link EventStream}, all methods are called from the same thread in the order the events were received.
+ */
+@FunctionalInterface
+public interface EventHandler {
+    void onEvent(Event event) throws Exception;
+
+    /**
+     * Called when the connection failed or {@link #onEvent(Event)} threw, the stream keeps running afterwards
+     */
+    default void onError(Exception e) {}
+
+    /**
+     * Called once after the stream stopped and every received event was handled
+     */
+    default void onClosed() {}
+}
@@ -0,0 +1,293 @@
+package dev.JustRed23.stonebrick.net;
+
+import dev.JustRed23.stonebrick.exceptions.NetRequestException;
+import dev.JustRed23.stonebrick.exceptions.NetResponseException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Range;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consumes a long-lived streaming response, like Server-Sent Events or newline delimited JSON, and passes every event to a handler as soon as it is received.
+ * <p>
+ * Events are parsed on a reader thread and handled on a separate thread. When the handler falls behind and the buffer is full the reader stops reading,
+ * so a slow handler slows down the server instead of filling memory. Connection errors are queued with the events, so the handler receives both in order on one thread.
+ * When the connection drops the stream reconnects, in {@link Format#SSE} mode the id of the last event is sent back in the {@code Last-Event-ID} header.
+ * The stream stops when it is closed, the server responds with 204 No Content or a client error.
+ * <p>
+ * The read timeout and deadline of the request builder are not used, a stream can stay quiet for as long as the server wants unless an {@link #idleTimeout(int)} is set.
+ */
+public class EventStream implements AutoCloseable {
+
+    private static final long MAX_RECONNECT_DELAY = TimeUnit.MINUTES.toMillis(1);
+    private static final Object CLOSED = new Object();
+
+    private final RequestBuilder builder;
+    private final EventHandler handler;
+
+    private Format format = Format.SSE;
+    private int bufferSize;
+    private long reconnectDelay;
+    private int maxRetries = -1;
+    private int idleTimeout;
+
+    private RequestBuilder connection;
+    //Events and errors for the dispatcher, the reader takes room before adding either so the queue never holds more than the buffer size
+    private BlockingQueue<Object> queue;
+    private Semaphore room;
+    private volatile Thread reader;
+    private volatile String lastEventId;
+    private volatile Request current;
+    private volatile boolean closed;
+    private int failures;
+
+    protected EventStream(@NotNull RequestBuilder builder, @NotNull EventHandler handler) {
+        this.builder = builder;
+        this.handler = handler;
+        this.bufferSize = NetworkConfig.EVENT_BUFFER > 0 ? NetworkConfig.EVENT_BUFFER : 256;
+        this.reconnectDelay = NetworkConfig.EVENT_RECONNECT_DELAY > 0 ? NetworkConfig.EVENT_RECONNECT_DELAY : 3000;
+    }
+
+    public EventStream format(@NotNull Format format) {
+        this.format = format;
+        return this;
+    }
+
+    /**
+     * The amount of events that can wait for the handler before the reader stops reading
+     */
+    public EventStream bufferSize(@Range(from = 1, to = Integer.MAX_VALUE) int events) {
+        this.bufferSize = events;
+        return this;
+    }
+
+    /**
+     * The time in milliseconds to wait before reconnecting, doubled after every failed attempt.
+     * A {@code retry} field sent by the server overrides this value.
+     */
+    public EventStream reconnectDelay(@Range(from = 0, to = Long.MAX_VALUE) long delay) {
+        this.reconnectDelay = delay;
+        return this;
+    }
+
+    /**
+     * The amount of consecutive failed connection attempts before the stream stops, -1 retries forever
+     */
+    public EventStream maxRetries(@Range(from = -1, to = Integer.MAX_VALUE) int maxRetries) {
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    /**
+     * The time in milliseconds the stream may go without receiving anything before it reconnects, 0 waits forever
+     */
+    public EventStream idleTimeout(@Range(from = 0, to = Integer.MAX_VALUE) int timeout) {
+        this.idleTimeout = timeout;
+        return this;
+    }
+
+    /**
+     * Resumes a previous stream from the given event id
+     */
+    public EventStream lastEventId(@Nullable String id) {
+        this.lastEventId = id;
+        return this;
+    }
+
+    public @Nullable String lastEventId() {
+        return lastEventId;
+    }
+
+    /**
+     * Connects and starts handling events in the background
+     */
+    public EventStream start() {
+        if (queue != null)
+            throw new IllegalStateException("Event stream already started");
+
+        queue = new LinkedBlockingQueue<>();
+        room = new Semaphore(bufferSize);
+
+        //Connections use a copy, the caller's builder is never changed
+        connection = builder.copy();
+        connection.readTO = idleTimeout;
+        connection.deadline = 0;
+        connection.header("Accept", format == Format.SSE ? "text/event-stream" : "*/*");
+        connection.header("Cache-Control", "no-cache");
+
+        Thread dispatcher = new Thread(this::dispatch, "Event Dispatcher " + builder.url);
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+
+        reader = new Thread(this::connect, "Event Reader " + builder.url);
+        reader.setDaemon(true);
+        reader.start();
+        return this;
+    }
+
+    public boolean isOpen() {
+        return queue != null && !closed;
+    }
+
+    /**
+     * Disconnects the stream, events that were already queued are still handled
+     */
+    public void close() {
+        closed = true;
+        Request request = current;
+        if (request != null)
+            request.cancel(true);
+
+        //Wakes the reader when it waits for room or to reconnect
+        Thread reader = this.reader;
+        if (reader != null && reader != Thread.currentThread())
+            reader.interrupt();
+    }
+
+    //Reader
+    private void connect() {
+        try {
+            while (!closed) {
+                if (lastEventId != null && format == Format.SSE)
+                    connection.header("Last-Event-ID", lastEventId);
+
+                Request request = new Request(connection);
+                current = request;
+                if (closed)
+                    break;
+
+                try {
+                    if (!request.stream((response, body) -> {
+                        if (response.responseCode() == 204)
+                            return false;
+                        if (!response.isSuccess())
+                            throw new NetResponseException(response);
+
+                        failures = 0;
+                        read(body);
+                        return true;
+                    }))
+                        break;
+                } catch (NetRequestException e) {
+                    if (closed)
+                        break;
+                    if (e.getCause() instanceof InterruptedException)
+                        break;
+
+                    offer(e);
+                    if (e.getCause() instanceof NetResponseException ex && ex.getResponse() != null && ex.getResponse().responseCode() < 500)
+                        break;
+                    if (++failures > maxRetries && maxRetries != -1)
+                        break;
+                }
+
+                if (!closed)
+                    Thread.sleep(Math.min(reconnectDelay << Math.min(Math.max(failures - 1, 0), 10), MAX_RECONNECT_DELAY));
+            }
+        } catch (InterruptedException ignored) {
+        } finally {
+            closed = true;
+            current = null;
+
+            //Does not need room, the dispatcher stops once it handled everything before this
+            queue.add(CLOSED);
+        }
+    }
+
+    private void offer(Object item) throws InterruptedException {
+        room.acquire();
+        queue.add(item);
+    }
+
+    private void read(InputStream body) throws IOException, InterruptedException {
+        //readLine accepts \n, \r and \r\n as line endings, like the SSE spec
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8), builder.bufferSize > 0 ? builder.bufferSize : 8192);
+        String line = reader.readLine();
+        if (line != null && line.startsWith("\uFEFF"))
+            line = line.substring(1);
+
+        if (format == Format.LINES) {
+            for (; line != null && !closed; line = reader.readLine())
+                if (!line.isEmpty())
+                    offer(new Event(null, "message", line));
+            return;
+        }
+
+        String type = null;
+        StringBuilder data = new StringBuilder();
+        for (; line != null && !closed; line = reader.readLine()) {
+            if (line.isEmpty()) {
+                if (!data.isEmpty()) {
+                    data.setLength(data.length() - 1);
+                    offer(new Event(lastEventId, type != null ? type : "message", data.toString()));
+                }
+                type = null;
+                data.setLength(0);
+                continue;
+            }
+            if (line.charAt(0) == ':')
+                continue;
+
+            int colon = line.indexOf(':');
+            String field = colon == -1 ? line : line.substring(0, colon);
+            String value = colon == -1 ? "" : line.substring(colon + (colon + 1 < line.length() && line.charAt(colon + 1) == ' ' ? 2 : 1));
+
+            switch (field) {
+                case "event" -> type = value;
+                case "data" -> data.append(value).append('\n');
+                case "id" -> {
+                    if (value.indexOf('\0') == -1)
+                        lastEventId = value;
+                }
+                case "retry" -> {
+                    if (!value.isEmpty() && value.chars().allMatch(Character::isDigit))
+                        reconnectDelay = Long.parseLong(value);
+                }
+            }
+        }
+        //An event without a trailing empty line is incomplete and discarded
+    }
+
+    //Dispatcher
+    private void dispatch() {
+        try {
+            Object item;
+            while ((item = queue.take()) != CLOSED) {
+                room.release();
+                if (item instanceof Exception e) {
+                    handler.onError(e);
+                    continue;
+                }
+
+                try {
+                    handler.onEvent((Event) item);
+                } catch (Exception e) {
+                    handler.onError(e);
+                }
+            }
+        } catch (InterruptedException ignored) {
+        } finally {
+            handler.onClosed();
+        }
+    }
+
+    public enum Format {
+        /**
+         * Server-Sent Events, {@code text/event-stream}
+         */
+        SSE,
+        /**
+         * Every non-empty line is an event, like newline delimited JSON
+         */
+        LINES
+    }
+}
@@ -0,0 +1,12 @@
+package dev.JustRed23.stonebrick.net;
+
+import org.jsoup.parser.StreamParser;
+
+/**
+ * Handles an HTML response while it is being received.
+ * Elements are parsed on demand from the parser, once the handler returns the rest of the page is never downloaded or parsed.
+ */
+@FunctionalInterface
+public interface HTMLHandler<T> {
+    T handle(Response response, StreamParser parser) throws Exception;
+}
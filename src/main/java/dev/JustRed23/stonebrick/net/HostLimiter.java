@@ -0,0 +1,180 @@
+package dev.JustRed23.stonebrick.net;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the requests sent to a single host, using a token bucket for the request rate and a fair semaphore for the amount of requests in flight.
+ * <p>
+ * Every request to a host shares the same limiter. When requests ask for different limits the strictest one applies, a limit is never loosened while the limiter exists.
+ * Permits are handed out in arrival order, a request that has to wait is queued behind every request that arrived before it.
+ */
+public final class HostLimiter {
+
+    //Permits of a semaphore without a concurrency limit, leaves room for releases without overflowing
+    private static final int UNLIMITED = Integer.MAX_VALUE / 2;
+
+    private final String host;
+    private final Permits inFlight = new Permits(UNLIMITED);
+    private int maxConcurrent;
+
+    private int rateLimit;
+    private double intervalNanos;
+    private double maxStored;
+    private double stored;
+    private long nextFree;
+
+    private volatile long lastUsed;
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    HostLimiter(String host, int ratePerSecond, int maxConcurrent) {
+        this.host = host;
+        this.nextFree = System.nanoTime();
+        limit(ratePerSecond, maxConcurrent);
+    }
+
+    /**
+     * Applies the given limits where they are stricter than the current ones, 0 means unlimited
+     */
+    synchronized void limit(int ratePerSecond, int maxConcurrent) {
+        if (maxConcurrent > 0 && (this.maxConcurrent == 0 || maxConcurrent < this.maxConcurrent)) {
+            inFlight.reducePermits((this.maxConcurrent == 0 ? UNLIMITED : this.maxConcurrent) - maxConcurrent);
+            this.maxConcurrent = maxConcurrent;
+        }
+
+        if (ratePerSecond > 0 && (rateLimit == 0 || ratePerSecond < rateLimit)) {
+            //Allow a burst of up to one second worth of requests
+            boolean first = rateLimit == 0;
+            rateLimit = ratePerSecond;
+            intervalNanos = (double) TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+            maxStored = ratePerSecond;
+            stored = first ? maxStored : Math.min(stored, maxStored);
+        }
+        lastUsed = System.nanoTime();
+    }
+
+    /**
+     * Waits until a request to this host is allowed to run
+     * @param policy What to do when the request can not run immediately
+     * @return The time in nanoseconds the request had to wait
+     * @throws RejectedExecutionException If the policy is {@link LimitPolicy#FAIL_FAST} and the request can not run immediately
+     */
+    long acquire(LimitPolicy policy) throws InterruptedException {
+        final boolean failFast = policy == LimitPolicy.FAIL_FAST;
+        final long start = System.nanoTime();
+
+        if (failFast) {
+            if (!inFlight.tryAcquire())
+                throw reject("too many requests in flight");
+        } else inFlight.acquire();
+
+        try {
+            long wait = reserve(failFast);
+            if (wait < 0)
+                throw reject("request rate exceeded");
+            if (wait > 0)
+                TimeUnit.NANOSECONDS.sleep(wait);
+        } catch (InterruptedException | RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+
+        long waited = System.nanoTime() - start;
+        acquired.increment();
+        waitNanos.add(waited);
+        return waited;
+    }
+
+    void release() {
+        inFlight.release();
+    }
+
+    private synchronized long reserve(boolean failFast) {
+        if (intervalNanos == 0)
+            return 0;
+
+        long now = System.nanoTime();
+        if (now > nextFree) {
+            stored = Math.min(maxStored, stored + (now - nextFree) / intervalNanos);
+            nextFree = now;
+        }
+
+        long wait = nextFree - now;
+        double fromStored = Math.min(1, stored);
+        if (failFast && wait > 0)
+            return -1;
+
+        nextFree += (long) ((1 - fromStored) * intervalNanos);
+        stored -= fromStored;
+        return wait;
+    }
+
+    /**
+     * @return If no request used this limiter for the given time and none are in flight or waiting
+     */
+    synchronized boolean isIdle(long idleNanos) {
+        return System.nanoTime() - lastUsed >= idleNanos
+                && !inFlight.hasQueuedThreads()
+                && inFlight.availablePermits() == (maxConcurrent == 0 ? UNLIMITED : maxConcurrent);
+    }
+
+    void touch() {
+        lastUsed = System.nanoTime();
+    }
+
+    private RejectedExecutionException reject(String reason) {
+        rejected.increment();
+        return new RejectedExecutionException(String.format("Host limit reached for %s: %s", host, reason));
+    }
+
+    public String host() {
+        return host;
+    }
+
+    /**
+     * @return The requests per second allowed to this host, 0 means unlimited
+     */
+    public synchronized int rateLimit() {
+        return rateLimit;
+    }
+
+    /**
+     * @return The amount of requests allowed in flight to this host, 0 means unlimited
+     */
+    public synchronized int maxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public long acquired() {
+        return acquired.sum();
+    }
+
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    public long totalWaitNanos() {
+        return waitNanos.sum();
+    }
+
+    public int waiting() {
+        return inFlight.getQueueLength();
+    }
+
+    //Exposes reducePermits so a concurrency limit can be tightened while requests are in flight
+    private static final class Permits extends Semaphore {
+
+        Permits(int permits) {
+            super(permits, true);
+        }
+
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+}
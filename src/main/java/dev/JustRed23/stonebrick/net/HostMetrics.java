@@ -0,0 +1,112 @@
+package dev.JustRed23.stonebrick.net;
+
+import dev.JustRed23.stonebrick.util.LatencyHistogram;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and transfer metrics of all requests sent to a single host
+ */
+public class HostMetrics {
+
+    private final String host;
+
+    private final LatencyHistogram connect = new LatencyHistogram();
+    private final LatencyHistogram firstByte = new LatencyHistogram();
+    private final LatencyHistogram total = new LatencyHistogram();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder cancellations = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final AtomicLongArray statusCodes = new AtomicLongArray(600);
+    private volatile long lastUsed = System.nanoTime();
+
+    HostMetrics(String host) {
+        this.host = host;
+    }
+
+    /**
+     * Records a finished request, durations are in nanoseconds and negative when the request never reached that stage
+     */
+    void record(long connectNanos, long firstByteNanos, long totalNanos, long sent, long received, int status, boolean failed, boolean cancelled) {
+        requests.increment();
+        if (connectNanos >= 0)
+            connect.record(connectNanos);
+        if (firstByteNanos >= 0)
+            firstByte.record(firstByteNanos);
+        total.record(totalNanos);
+
+        bytesOut.add(sent);
+        bytesIn.add(received);
+
+        if (status > 0 && status < 600)
+            statusCodes.incrementAndGet(status);
+        if (cancelled)
+            cancellations.increment();
+        else if (failed)
+            errors.increment();
+    }
+
+    void touch() {
+        lastUsed = System.nanoTime();
+    }
+
+    /**
+     * @return If no request to this host started for the given time
+     */
+    boolean isIdle(long idleNanos) {
+        return System.nanoTime() - lastUsed >= idleNanos;
+    }
+
+    public String host() {
+        return host;
+    }
+
+    public Snapshot snapshot() {
+        Map<Integer, Long> statuses = new TreeMap<>();
+        for (int i = 0; i < statusCodes.length(); i++) {
+            long count = statusCodes.get(i);
+            if (count > 0)
+                statuses.put(i, count);
+        }
+
+        return new Snapshot(host, requests.sum(), errors.sum(), cancellations.sum(), bytesIn.sum(), bytesOut.sum(),
+                Collections.unmodifiableMap(statuses), connect.snapshot(), firstByte.snapshot(), total.snapshot());
+    }
+
+    public void reset() {
+        connect.reset();
+        firstByte.reset();
+        total.reset();
+        requests.reset();
+        errors.reset();
+        cancellations.reset();
+        bytesIn.reset();
+        bytesOut.reset();
+        for (int i = 0; i < statusCodes.length(); i++)
+            statusCodes.set(i, 0);
+    }
+
+    /**
+     * A point in time view of the metrics of a host
+     * @param errors Requests that failed without a response, cancelled requests are not included
+     * @param statusCodes The amount of responses per HTTP status code
+     * @param connect Time until the connection was established
+     * @param firstByte Time until the response status was received
+     * @param total Time until the response was fully read
+     */
+    public record Snapshot(String host, long requests, long errors, long cancellations, long bytesIn, long bytesOut,
+                           Map<Integer, Long> statusCodes,
+                           LatencyHistogram.Snapshot connect, LatencyHistogram.Snapshot firstByte, LatencyHistogram.Snapshot total) {
+
+        public double errorRate() {
+            return requests == 0 ? 0 : (double) errors / requests;
+        }
+    }
+}
@@ -0,0 +1,490 @@
+package dev.JustRed23.stonebrick.net;
+
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * A pull-style JSON reader that decodes a document token by token while it is read from a stream.
+ * <p>
+ * Only the value that is currently being read is held in memory, which makes it possible to walk through large documents.
+ * Use {@link #forEachElement(Consumer)} to iterate a large top-level array, or {@link #select(String...)} to extract a few fields of an object.
+ */
+public class JSONStreamReader implements Closeable {
+
+    public enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    private static final int EMPTY_DOCUMENT = 0, NONEMPTY_DOCUMENT = 1,
+            EMPTY_ARRAY = 2, NONEMPTY_ARRAY = 3,
+            EMPTY_OBJECT = 4, DANGLING_NAME = 5, NONEMPTY_OBJECT = 6;
+
+    private final Reader in;
+    private final char[] buffer = new char[8192];
+    private int pos, limit;
+    private long consumed;
+
+    private int[] stack = new int[32];
+    private int stackSize;
+
+    private final StringBuilder builder = new StringBuilder();
+    private Token peeked;
+    private String peekedValue;
+
+    public JSONStreamReader(@NotNull InputStream in) {
+        this(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    public JSONStreamReader(@NotNull Reader in) {
+        this.in = in;
+        stack[stackSize++] = EMPTY_DOCUMENT;
+    }
+
+    //Navigation
+    public Token peek() throws IOException {
+        if (peeked == null)
+            peeked = doPeek();
+        return peeked;
+    }
+
+    public boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        stackSize--;
+    }
+
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        stackSize--;
+    }
+
+    //Values
+    public String nextName() throws IOException {
+        expect(Token.NAME);
+        return peekedValue;
+    }
+
+    /**
+     * Reads the next string, numbers are returned as they appear in the document
+     */
+    public String nextString() throws IOException {
+        if (peek() == Token.NUMBER)
+            expect(Token.NUMBER);
+        else expect(Token.STRING);
+        return peekedValue;
+    }
+
+    public boolean nextBoolean() throws IOException {
+        expect(Token.BOOLEAN);
+        return Boolean.parseBoolean(peekedValue);
+    }
+
+    public void nextNull() throws IOException {
+        expect(Token.NULL);
+    }
+
+    /**
+     * Reads the next number the same way org.json does, as an {@link Integer}, {@link Long}, {@link BigInteger} or {@link BigDecimal}.
+     * A negative zero is read as the {@link Double} -0.0
+     */
+    public Number nextNumber() throws IOException {
+        expect(Token.NUMBER);
+        return toNumber(peekedValue);
+    }
+
+    public int nextInt() throws IOException {
+        return nextNumber().intValue();
+    }
+
+    public long nextLong() throws IOException {
+        return nextNumber().longValue();
+    }
+
+    public double nextDouble() throws IOException {
+        return nextNumber().doubleValue();
+    }
+
+    /**
+     * Reads the next value into its org.json representation. Objects and arrays are fully read into a {@link JSONObject} or {@link JSONArray}.
+     * @return a {@link JSONObject}, {@link JSONArray}, {@link String}, {@link Number}, {@link Boolean} or {@link JSONObject#NULL}
+     */
+    public Object nextValue() throws IOException {
+        switch (peek()) {
+            case BEGIN_OBJECT -> {
+                JSONObject object = new JSONObject();
+                beginObject();
+                while (hasNext())
+                    object.put(nextName(), nextValue());
+                endObject();
+                return object;
+            }
+            case BEGIN_ARRAY -> {
+                JSONArray array = new JSONArray();
+                beginArray();
+                while (hasNext())
+                    array.put(nextValue());
+                endArray();
+                return array;
+            }
+            case STRING -> {
+                return nextString();
+            }
+            case NUMBER -> {
+                return nextNumber();
+            }
+            case BOOLEAN -> {
+                return nextBoolean();
+            }
+            case NULL -> {
+                nextNull();
+                return JSONObject.NULL;
+            }
+            default -> throw syntaxError("Expected a value but was " + peeked);
+        }
+    }
+
+    /**
+     * Skips the next value, including all nested values, without decoding it
+     */
+    public void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_OBJECT -> {
+                    beginObject();
+                    depth++;
+                }
+                case BEGIN_ARRAY -> {
+                    beginArray();
+                    depth++;
+                }
+                case END_OBJECT -> {
+                    endObject();
+                    depth--;
+                }
+                case END_ARRAY -> {
+                    endArray();
+                    depth--;
+                }
+                case END_DOCUMENT -> throw syntaxError("Unexpected end of document");
+                default -> peeked = null;
+            }
+        } while (depth > 0);
+    }
+
+    //Helpers
+    /**
+     * Reads a top-level array and passes each element to the action as soon as it is read
+     */
+    public void forEachElement(@NotNull Consumer<Object> action) throws IOException {
+        beginArray();
+        while (hasNext())
+            action.accept(nextValue());
+        endArray();
+    }
+
+    /**
+     * Reads the fields with the given names from the next object, all other fields are skipped.
+     * <p>
+     * Reading stops as soon as all fields are found, the rest of the object is never read.
+     */
+    public Map<String, Object> select(@NotNull String... fields) throws IOException {
+        Set<String> wanted = new HashSet<>(Arrays.asList(fields));
+        Map<String, Object> result = new HashMap<>();
+
+        beginObject();
+        while (hasNext()) {
+            String name = nextName();
+            if (wanted.contains(name)) {
+                result.put(name, nextValue());
+                if (result.size() == wanted.size())
+                    return result;
+            } else skipValue();
+        }
+        endObject();
+        return result;
+    }
+
+    public void close() throws IOException {
+        peeked = null;
+        stackSize = 0;
+        in.close();
+    }
+
+    //Parsing
+    private void expect(Token token) throws IOException {
+        if (peek() != token)
+            throw syntaxError("Expected " + token + " but was " + peeked);
+        peeked = null;
+    }
+
+    private void push(int state) {
+        if (stackSize == stack.length)
+            stack = Arrays.copyOf(stack, stackSize * 2);
+        stack[stackSize++] = state;
+    }
+
+    private Token doPeek() throws IOException {
+        if (stackSize == 0)
+            throw new IllegalStateException("JSONStreamReader is closed");
+
+        int c;
+        switch (stack[stackSize - 1]) {
+            case EMPTY_ARRAY -> {
+                stack[stackSize - 1] = NONEMPTY_ARRAY;
+                if (nextNonWhitespace(true) == ']')
+                    return Token.END_ARRAY;
+                pos--;
+            }
+            case NONEMPTY_ARRAY -> {
+                c = nextNonWhitespace(true);
+                if (c == ']')
+                    return Token.END_ARRAY;
+                if (c != ',')
+                    throw syntaxError("Unterminated array");
+            }
+            case EMPTY_OBJECT, NONEMPTY_OBJECT -> {
+                boolean empty = stack[stackSize - 1] == EMPTY_OBJECT;
+                stack[stackSize - 1] = DANGLING_NAME;
+                c = nextNonWhitespace(true);
+                if (c == '}')
+                    return Token.END_OBJECT;
+                if (!empty) {
+                    if (c != ',')
+                        throw syntaxError("Unterminated object");
+                    c = nextNonWhitespace(true);
+                }
+                if (c != '"')
+                    throw syntaxError("Expected a name");
+                peekedValue = readString();
+                return Token.NAME;
+            }
+            case DANGLING_NAME -> {
+                stack[stackSize - 1] = NONEMPTY_OBJECT;
+                if (nextNonWhitespace(true) != ':')
+                    throw syntaxError("Expected ':'");
+            }
+            case EMPTY_DOCUMENT -> stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+            case NONEMPTY_DOCUMENT -> {
+                if (nextNonWhitespace(false) == -1)
+                    return Token.END_DOCUMENT;
+                throw syntaxError("Expected the end of the document");
+            }
+        }
+
+        c = nextNonWhitespace(true);
+        switch (c) {
+            case '{' -> {
+                return Token.BEGIN_OBJECT;
+            }
+            case '[' -> {
+                return Token.BEGIN_ARRAY;
+            }
+            case '"' -> {
+                peekedValue = readString();
+                return Token.STRING;
+            }
+            case 't', 'f', 'n' -> {
+                pos--;
+                String literal = readWord();
+                switch (literal) {
+                    case "true", "false" -> {
+                        peekedValue = literal;
+                        return Token.BOOLEAN;
+                    }
+                    case "null" -> {
+                        return Token.NULL;
+                    }
+                    default -> throw syntaxError("Unexpected literal " + literal);
+                }
+            }
+            default -> {
+                if (c != '-' && (c < '0' || c > '9'))
+                    throw syntaxError("Unexpected character '" + (char) c + "'");
+                pos--;
+                peekedValue = readWord();
+                return Token.NUMBER;
+            }
+        }
+    }
+
+    private boolean fill() throws IOException {
+        consumed += pos;
+        pos = 0;
+        limit = in.read(buffer, 0, buffer.length);
+        if (limit == -1) {
+            limit = 0;
+            return false;
+        }
+        return true;
+    }
+
+    private int nextNonWhitespace(boolean throwOnEof) throws IOException {
+        while (pos < limit || fill()) {
+            char c = buffer[pos++];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t')
+                return c;
+        }
+        if (throwOnEof)
+            throw syntaxError("Unexpected end of document");
+        return -1;
+    }
+
+    private String readWord() throws IOException {
+        builder.setLength(0);
+        while (pos < limit || fill()) {
+            char c = buffer[pos];
+            if ((c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || c == '-' || c == '+' || c == '.' || c == 'E') {
+                builder.append(c);
+                pos++;
+            } else break;
+        }
+        return builder.toString();
+    }
+
+    private String readString() throws IOException {
+        builder.setLength(0);
+        while (true) {
+            if (pos == limit && !fill())
+                throw syntaxError("Unterminated string");
+
+            //Copy runs of plain characters at once
+            int start = pos;
+            while (pos < limit) {
+                char c = buffer[pos];
+                if (c == '"' || c == '\\')
+                    break;
+                pos++;
+            }
+            builder.append(buffer, start, pos - start);
+            if (pos == limit)
+                continue;
+
+            if (buffer[pos++] == '"')
+                return builder.toString();
+            builder.append(readEscape());
+        }
+    }
+
+    private char readEscape() throws IOException {
+        if (pos == limit && !fill())
+            throw syntaxError("Unterminated escape sequence");
+
+        char c = buffer[pos++];
+        return switch (c) {
+            case 'b' -> '\b';
+            case 'f' -> '\f';
+            case 'n' -> '\n';
+            case 'r' -> '\r';
+            case 't' -> '\t';
+            case '"', '\\', '/' -> c;
+            case 'u' -> {
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    if (pos == limit && !fill())
+                        throw syntaxError("Unterminated escape sequence");
+                    int digit = Character.digit(buffer[pos++], 16);
+                    if (digit == -1)
+                        throw syntaxError("Invalid unicode escape");
+                    value = (value << 4) | digit;
+                }
+                yield (char) value;
+            }
+            default -> throw syntaxError("Invalid escape sequence '\\" + c + "'");
+        };
+    }
+
+    private Number toNumber(String value) {
+        if (!isNumber(value))
+            throw syntaxError("Invalid number " + value);
+
+        if (value.indexOf('.') != -1 || value.indexOf('e') != -1 || value.indexOf('E') != -1 || value.equals("-0")) {
+            //BigDecimal has no negative zero
+            BigDecimal decimal = new BigDecimal(value);
+            return value.charAt(0) == '-' && decimal.signum() == 0 ? (Number) (-0.0d) : decimal;
+        }
+
+        if (value.length() < 19) {
+            long number = Long.parseLong(value);
+            if (number == (int) number)
+                return (int) number;
+            return number;
+        }
+
+        BigInteger integer = new BigInteger(value);
+        if (integer.bitLength() < 32)
+            return integer.intValue();
+        if (integer.bitLength() < 64)
+            return integer.longValue();
+        return integer;
+    }
+
+    /**
+     * @return If the value follows the number grammar of JSON, so leading zeros and a leading + are rejected
+     */
+    private static boolean isNumber(String value) {
+        int i = 0, length = value.length();
+        if (i < length && value.charAt(i) == '-')
+            i++;
+
+        if (i < length && value.charAt(i) == '0')
+            i++;
+        else if ((i = digits(value, i)) == -1)
+            return false;
+
+        if (i < length && value.charAt(i) == '.' && (i = digits(value, i + 1)) == -1)
+            return false;
+
+        if (i < length && (value.charAt(i) == 'e' || value.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (value.charAt(i) == '+' || value.charAt(i) == '-'))
+                i++;
+            if ((i = digits(value, i)) == -1)
+                return false;
+        }
+        return i == length;
+    }
+
+    //The index after the digits starting at the index, -1 if there are none
+    private static int digits(String value, int start) {
+        int i = start;
+        while (i < value.length() && value.charAt(i) >= '0' && value.charAt(i) <= '9')
+            i++;
+        return i == start ? -1 : i;
+    }
+
+    private JSONException syntaxError(String message) {
+        return new JSONException(message + " at character " + (consumed + pos));
+    }
+}
@@ -0,0 +1,19 @@
+package dev.JustRed23.stonebrick.net;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+public enum LimitPolicy {
+    /**
+     * Requests that exceed a host limit wait in arrival order until they are allowed to run
+     */
+    QUEUE,
+    /**
+     * Requests that exceed a host limit are rejected immediately
+     */
+    FAIL_FAST;
+
+    public static LimitPolicy translate(String raw) throws NoSuchElementException {
+        return Arrays.stream(LimitPolicy.values()).filter(policy -> policy.name().equalsIgnoreCase(raw)).findFirst().orElseThrow();
+    }
+}
@@ -15,6 +15,57 @@ public final class NetworkConfig {
     @ConfigField(defaultValue = "10000", optional = true)
     public static int MAX_READ_TIMEOUT;
 
+    @ConfigField(defaultValue = "0", optional = true)
+    public static int MAX_REQUEST_TIME;
+
     @ConfigField(defaultValue = "4096", optional = true)
     public static int BUFFER_SIZE;
+
+    @ConfigField(defaultValue = "100", optional = true)
+    public static int PROGRESS_INTERVAL;
+
+    @ConfigField(defaultValue = "0", optional = true)
+    public static int PROGRESS_STEP;
+
+    @ConfigField(defaultValue = "true", optional = true)
+    public static boolean METRICS_ENABLED;
+
+    @ConfigField(defaultValue = "64", optional = true)
+    public static int DISPATCHER_THREADS;
+
+    @ConfigField(defaultValue = "0", optional = true)
+    public static int DISPATCHER_THREADS_PER_HOST;
+
+    @ConfigField(defaultValue = "1000", optional = true)
+    public static int PRIORITY_AGING;
+
+    @ConfigField(defaultValue = "16", optional = true)
+    public static int BATCH_PARALLELISM;
+
+    @ConfigField(defaultValue = "10", optional = true)
+    public static int LOADER_WINDOW;
+
+    @ConfigField(defaultValue = "100", optional = true)
+    public static int LOADER_MAX_BATCH;
+
+    @ConfigField(defaultValue = "256", optional = true)
+    public static int EVENT_BUFFER;
+
+    @ConfigField(defaultValue = "3000", optional = true)
+    public static int EVENT_RECONNECT_DELAY;
+
+    @ConfigField(defaultValue = "16777216", optional = true)
+    public static int SPILL_THRESHOLD;
+
+    @ConfigField(defaultValue = "4", optional = true)
+    public static int DOWNLOAD_SEGMENTS;
+
+    @ConfigField(defaultValue = "0", optional = true)
+    public static int MAX_REQUESTS_PER_SECOND;
+
+    @ConfigField(defaultValue = "0", optional = true)
+    public static int MAX_CONCURRENT_PER_HOST;
+
+    @ConfigField(defaultValue = "QUEUE", optional = true)
+    public static LimitPolicy HOST_LIMIT_POLICY;
 }
\ No newline at end of file
@@ -1,19 +1,35 @@
 package dev.JustRed23.stonebrick.net;
 
 import dev.JustRed23.stonebrick.exceptions.NetRequestException;
+import dev.JustRed23.stonebrick.util.CommonThreads;
+import dev.JustRed23.stonebrick.util.LatencyHistogram;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.net.URI;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class NetworkManager {
 
-    protected static final Object LOCK = new Object();
+    private static final Map<RequestKey, CallbackCollection> requests = new ConcurrentHashMap<>();
+    private static final Map<String, HostLimiter> limiters = new ConcurrentHashMap<>();
+    private static final int MAX_LIMITERS = 256;
+    private static final long LIMITER_IDLE = TimeUnit.MINUTES.toNanos(1);
+    private static final AtomicLong nextEviction = new AtomicLong(System.nanoTime());
+    private static final RequestDispatcher dispatcher = new RequestDispatcher();
 
-    private static Map<String, CallbackCollection> requests;
+    static {
+        //Only registered once the dispatcher exists, an application that never sends a request does not load the network classes
+        CommonThreads.onShutdown(NetworkManager::shutdown);
+    }
 
     public static RequestBuilder get(@NotNull String url, @Nullable Object... formatArgs) {
         return new RequestBuilder(processURL(url, formatArgs), Method.GET);
@@ -31,22 +47,41 @@ public class NetworkManager {
         return new RequestBuilder(processURL(url, formatArgs), Method.DELETE);
     }
 
+    /**
+     * Creates a batch that sends all requests with a bounded amount of requests in flight
+     */
+    public static BatchRequest batch(@NotNull Collection<RequestBuilder> requests) {
+        return new BatchRequest(requests);
+    }
+
     public static void cancelAll() {
         cancelAll(false);
     }
 
     public static void cancelAll(boolean force) {
-        new Thread(() -> {
-            synchronized (LOCK) {
-                if (requests == null)
-                    return;
+        new Thread(() -> requests.entrySet().removeIf(entry -> entry.getValue().cancel(force))).start();
+    }
 
-                requests.entrySet().removeIf(entry -> entry.getValue().cancel(force));
+    public static Collection<HostLimiter> hostLimiters() {
+        return Collections.unmodifiableCollection(limiters.values());
+    }
 
-                if (requests.size() == 0)
-                    requests = null;
-            }
-        }).start();
+    /**
+     * @return The time asynchronous requests of the given priority waited for a dispatcher thread
+     */
+    public static LatencyHistogram.Snapshot queueWait(@NotNull Priority priority) {
+        return dispatcher.queueWait(priority);
+    }
+
+    public static int queued(@NotNull Priority priority) {
+        return dispatcher.queued(priority);
+    }
+
+    /**
+     * Stops the dispatcher threads once the queued asynchronous requests are done, the next asynchronous request starts them again
+     */
+    public static void shutdown() {
+        dispatcher.shutdown();
     }
 
     //Helper methods
@@ -60,54 +95,81 @@ public class NetworkManager {
         } else return url;
     }
 
+    //Host limits
+    static HostLimiter limiter(String host, int rateLimit, int maxConcurrent) {
+        //A request without limits of its own is still held to the limits other requests set for the host
+        if (rateLimit <= 0 && maxConcurrent <= 0)
+            return limiters.computeIfPresent(host, (key, limiter) -> {
+                limiter.touch();
+                return limiter;
+            });
+
+        HostLimiter limiter = limiters.compute(host, (key, existing) -> {
+            if (existing == null)
+                return new HostLimiter(host, rateLimit, maxConcurrent);
+            existing.limit(rateLimit, maxConcurrent);
+            return existing;
+        });
+
+        if (limiters.size() > MAX_LIMITERS)
+            evictIdleLimiters();
+        return limiter;
+    }
+
+    //The amount of requests allowed in flight to the host, 0 means unlimited
+    static int maxConcurrent(String host) {
+        HostLimiter limiter = limiters.get(host);
+        return limiter != null ? limiter.maxConcurrent() : 0;
+    }
+
+    //Forgets hosts that have not been used for a while, at most once per idle period
+    private static void evictIdleLimiters() {
+        long now = System.nanoTime(), next = nextEviction.get();
+        if (now - next < 0 || !nextEviction.compareAndSet(next, now + LIMITER_IDLE))
+            return;
+
+        for (String host : limiters.keySet())
+            limiters.computeIfPresent(host, (key, limiter) -> limiter.isIdle(LIMITER_IDLE) ? null : limiter);
+    }
+
     //Async request handling & progress handling
-    protected static boolean addCallback(Callback callback, Request request) {
-        synchronized (LOCK) {
-            if (requests == null)
-                requests = new HashMap<>();
+    static void dispatch(Priority priority, String url, Runnable runnable) {
+        String host;
+        try {
+            host = Objects.requireNonNullElse(URI.create(url).getAuthority(), "");
+        } catch (IllegalArgumentException e) {
+            host = ""; //Fails when the request runs
+        }
+        dispatcher.dispatch(priority, host, runnable);
+    }
 
-            String key = CallbackCollection.create(request);
+    protected static boolean addCallback(Callback callback, Request request) {
+        final RequestKey key = request.key();
+        while (true) {
             CallbackCollection collection = requests.get(key);
 
-            if (collection != null) {
-                collection.addCallback(callback, request);
-                return false;
-            } else {
+            if (collection == null) {
                 collection = new CallbackCollection();
                 collection.addCallback(callback, request);
-                requests.put(key, collection);
-                return true;
-            }
+                if (requests.putIfAbsent(key, collection) == null)
+                    return true;
+            } else if (collection.addCallback(callback, request))
+                return false;
+            else requests.remove(key, collection); //Completed but not yet removed, retry with a fresh collection
         }
     }
 
     protected static void onProgress(Request request, int current, int total) {
-        synchronized (LOCK) {
-            if (requests == null)
-                return;
-
-            String key = CallbackCollection.create(request);
-            CallbackCollection collection = requests.get(key);
-
-            if (collection != null)
-                collection.onProgress(request, current, total);
-        }
+        CallbackCollection collection = requests.get(request.key());
+        if (collection != null)
+            collection.onProgress(request, current, total);
     }
 
     protected static void onComplete(Request request, Response response, NetRequestException exception) {
-        synchronized (LOCK) {
-            if (requests == null)
-                return;
+        CallbackCollection collection = requests.get(request.key());
 
-            String key = CallbackCollection.create(request);
-            CallbackCollection collection = requests.get(key);
-
-            if (collection != null) {
-                collection.onComplete(response, exception);
-                requests.remove(key);
-                if (requests.size() == 0)
-                    requests = null;
-            }
-        }
+        //Remove before completing so new requests start a new collection instead of joining this one
+        if (collection != null && requests.remove(request.key(), collection))
+            collection.onComplete(response, exception);
     }
 }
\ No newline at end of file
@@ -0,0 +1,63 @@
+package dev.JustRed23.stonebrick.net;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects {@link HostMetrics} for every host requests are sent to. Recording can be turned off with {@link NetworkConfig#METRICS_ENABLED}.
+ * <p>
+ * Once more than 256 hosts are tracked, the metrics of hosts that did not receive a request for 10 minutes are dropped.
+ */
+public final class NetworkMetrics {
+
+    private static final Map<String, HostMetrics> hosts = new ConcurrentHashMap<>();
+    private static final int MAX_HOSTS = 256;
+    private static final long HOST_IDLE = TimeUnit.MINUTES.toNanos(10);
+    private static final AtomicLong nextEviction = new AtomicLong(System.nanoTime());
+
+    static HostMetrics host(String host) {
+        HostMetrics metrics = hosts.get(host);
+        if (metrics == null) {
+            metrics = hosts.computeIfAbsent(host, HostMetrics::new);
+            if (hosts.size() > MAX_HOSTS)
+                evictIdleHosts();
+        }
+        metrics.touch();
+        return metrics;
+    }
+
+    //At most once per idle period, like the host limiters
+    private static void evictIdleHosts() {
+        long now = System.nanoTime(), next = nextEviction.get();
+        if (now - next < 0 || !nextEviction.compareAndSet(next, now + HOST_IDLE))
+            return;
+
+        for (String host : hosts.keySet())
+            hosts.computeIfPresent(host, (key, metrics) -> metrics.isIdle(HOST_IDLE) ? null : metrics);
+    }
+
+    /**
+     * @return A snapshot of the metrics of every host, sorted by host
+     */
+    public static Map<String, HostMetrics.Snapshot> snapshot() {
+        Map<String, HostMetrics.Snapshot> snapshot = new TreeMap<>();
+        hosts.forEach((host, metrics) -> snapshot.put(host, metrics.snapshot()));
+        return snapshot;
+    }
+
+    @Nullable
+    public static HostMetrics.Snapshot snapshot(@NotNull String host) {
+        HostMetrics metrics = hosts.get(host);
+        return metrics != null ? metrics.snapshot() : null;
+    }
+
+    public static void reset() {
+        hosts.clear();
+    }
+}
@@ -0,0 +1,13 @@
+package dev.JustRed23.stonebrick.net;
+
+public enum Priority {
+    /**
+     * Interactive requests that a user is waiting for
+     */
+    HIGH,
+    NORMAL,
+    /**
+     * Background work like bulk syncs
+     */
+    LOW
+}
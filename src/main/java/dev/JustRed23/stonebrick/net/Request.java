@@ -1,39 +1,115 @@
 package dev.JustRed23.stonebrick.net;
 
 import dev.JustRed23.stonebrick.exceptions.NetRequestException;
+import dev.JustRed23.stonebrick.util.BufferPool;
+import dev.JustRed23.stonebrick.util.CommonThreads;
+import dev.JustRed23.stonebrick.util.PresizedByteArrayOutputStream;
 import dev.JustRed23.stonebrick.util.StreamUtils;
+import org.jetbrains.annotations.NotNull;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class Request {
 
     private final RequestBuilder builder;
-    private boolean cancelled;
+    private final RequestKey key;
+    private volatile boolean cancelled;
+    private volatile boolean timedOut;
+    private volatile HttpURLConnection connection;
+    private volatile Thread waiting;
+    private boolean interruptedWaiting; //Guarded by this
+    private long deadline;
     protected boolean cancelCallback;
     private Response response;
+    private long queueTime;
+    private long lastProgress;
+    private long received;
+    private int lastProgressBytes;
 
     public Request(RequestBuilder builder) {
         this.builder = builder;
+        this.key = new RequestKey(builder.method, builder.url, builder.body);
     }
 
     protected Response get() throws NetRequestException {
         if (response != null)
             return response;
 
+        response = execute(this::read, error -> error);
+        return response;
+    }
+
+    protected <T> T stream(StreamHandler<T> handler) throws NetRequestException {
+        return execute((c, is) -> {
+            try {
+                return handler.handle(new Response(null, url(), c, queueTime), is);
+            } catch (Exception e) {
+                throw new HandlerException(e);
+            }
+        }, error -> handler.handle(error, error.asStream()));
+    }
+
+    private <T> T execute(BodyReader<T> reader, ErrorReader<T> onError) throws NetRequestException {
+        long start = -1, connected = -1, firstByte = -1;
+        int status = -1;
+        HostMetrics metrics = null;
+        boolean failed = true;
+
+        deadline = builder.deadline > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(builder.deadline) : 0;
+        ScheduledFuture<?> watchdog = deadline != 0 ? CommonThreads.scheduledThread.schedule(this::expire, builder.deadline, TimeUnit.MILLISECONDS) : null;
+
         try {
             URL url = URI.create(builder.url).toURL();
             HttpURLConnection c = (HttpURLConnection) url.openConnection();
+            if (NetworkConfig.METRICS_ENABLED)
+                metrics = NetworkMetrics.host(url.getAuthority());
+
+            HostLimiter limiter = NetworkManager.limiter(url.getAuthority(), builder.rateLimit, builder.maxConcurrent);
+            if (limiter != null) {
+                waiting = Thread.currentThread();
+                boolean interrupted = false;
+                try {
+                    check();
+                    queueTime = limiter.acquire(builder.limitPolicy);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    throw e;
+                } finally {
+                    synchronized (this) {
+                        waiting = null;
+                        //Only swallow the interrupt sent by cancel or expire, an interrupt from anywhere else is kept for the caller
+                        if (interruptedWaiting)
+                            Thread.interrupted();
+                        else if (interrupted)
+                            Thread.currentThread().interrupt();
+                        interruptedWaiting = false;
+                    }
+                }
+            }
+
+            connection = c;
+            start = System.nanoTime();
             try {
+                check();
                 c.setRequestMethod(builder.method.name());
-                c.setConnectTimeout(builder.connectTO);
-                c.setReadTimeout(builder.readTO);
+                c.setConnectTimeout(timeout(builder.connectTO, deadline));
+                c.setReadTimeout(timeout(builder.readTO, deadline));
                 c.setInstanceFollowRedirects(true);
 
                 if (builder.headers != null && builder.headers.size() > 0) {
@@ -45,8 +121,12 @@ public class Request {
 
                 check();
 
-                if (builder.body != null) {
+                if (builder.body != null)
                     c.setDoOutput(true);
+                c.connect();
+                connected = System.nanoTime();
+
+                if (builder.body != null) {
                     try (OutputStream os = c.getOutputStream()) {
                         os.write(builder.body);
                         os.flush();
@@ -54,57 +134,164 @@ public class Request {
                 }
 
                 check();
-                byte[] data;
-                try (
-                        InputStream is = c.getInputStream();
-                        ByteArrayOutputStream baos = new ByteArrayOutputStream()
-                ) {
-                    byte[] buffer = new byte[builder.bufferSize];
-                    int read;
-                    int total = 0;
-                    int available;
-
-                    if (c.getHeaderField("Content-Length") != null)
-                        available = Integer.parseInt(c.getHeaderField("Content-Length"));
-                    else available = is.available();
-
-                    if (available != 0)
-                        NetworkManager.onProgress(this, 0, available);
-
-                    while ((read = is.read(buffer)) != -1) {
-                        check();
-                        baos.write(buffer, 0, read);
-                        total += read;
-                        if (available != 0)
-                            NetworkManager.onProgress(this, total, available);
-                    }
+                status = c.getResponseCode();
+                firstByte = System.nanoTime();
 
-                    if (available != 0)
-                        NetworkManager.onProgress(this, 100, 100);
-
-                    data = baos.toByteArray();
-                    response = new Response(data, url(), c);
+                try (InputStream is = counting(c.getInputStream())) {
+                    T result = reader.read(c, is);
+                    failed = false;
+                    return result;
                 }
+            } catch (HandlerException e) {
+                check();
+                throw e.getCause();
             } catch (Exception e) {
-                try (InputStream errorStream = c.getErrorStream()) {
-                    response = new Response(StreamUtils.readEntireStream(errorStream), url(), c);
+                check();
+                Response error;
+                try (InputStream errorStream = counting(c.getErrorStream())) {
+                    error = new Response(StreamUtils.readEntireStream(errorStream), url(), c, queueTime);
                 } catch (IOException e1) {
-                    response = new Response(null, url(), c);
+                    error = new Response(null, url(), c, queueTime);
                 }
+                T result = onError.read(error);
+                failed = false;
+                return result;
             } finally {
+                connection = null;
                 c.disconnect();
+                if (limiter != null)
+                    limiter.release();
             }
+        } catch (NetRequestException e) {
+            throw e;
         } catch (Exception e) {
+            check();
             throw new NetRequestException(this, e);
+        } finally {
+            if (watchdog != null)
+                watchdog.cancel(false);
+            if (metrics != null && start != -1)
+                metrics.record(
+                        connected == -1 ? -1 : connected - start,
+                        firstByte == -1 ? -1 : firstByte - start,
+                        System.nanoTime() - start,
+                        connected != -1 && builder.body != null ? builder.body.length : 0,
+                        received,
+                        status, failed, cancelled
+                );
         }
-        return response;
+    }
+
+    private Response read(HttpURLConnection c, InputStream is) throws Exception {
+        long contentLength = c.getHeaderField("Content-Length") != null ? Long.parseLong(c.getHeaderField("Content-Length")) : -1;
+        int available = contentLength >= 0 ? (int) Math.min(contentLength, Integer.MAX_VALUE) : is.available();
+        boolean spill = builder.spillThreshold > 0;
+
+        byte[] buffer = BufferPool.acquire(builder.bufferSize);
+        File file = null;
+        FileChannel channel = null;
+        try (ByteArrayOutputStream baos = new PresizedByteArrayOutputStream(spill && contentLength > builder.spillThreshold ? 0 : available)) {
+            int read;
+            long total = 0;
+
+            if (available != 0)
+                progress(0, available, true);
+
+            while ((read = is.read(buffer)) != -1) {
+                check();
+                total += read;
+
+                //Move the body to a temporary file once it grows past the threshold
+                if (channel == null && spill && (total > builder.spillThreshold || contentLength > builder.spillThreshold)) {
+                    file = File.createTempFile("stonebrick", ".response");
+                    channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+                    write(channel, baos.toByteArray(), baos.size());
+                    baos.reset();
+                }
+
+                if (channel != null)
+                    write(channel, buffer, read);
+                else baos.write(buffer, 0, read);
+
+                if (available != 0)
+                    progress((int) Math.min(total, Integer.MAX_VALUE), available, false);
+            }
+
+            if (available != 0)
+                progress(100, 100, true);
+
+            if (channel != null) {
+                channel.close();
+                Response response = new Response(file, total, url(), c, queueTime);
+                file = null;
+                return response;
+            }
+            return new Response(baos.toByteArray(), url(), c, queueTime);
+        } finally {
+            BufferPool.release(buffer);
+            StreamUtils.closeQuietly(channel);
+            if (file != null)
+                Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    private static void write(FileChannel channel, byte[] data, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    private InputStream counting(InputStream is) {
+        return is != null && NetworkConfig.METRICS_ENABLED ? new CountingInputStream(is) : is;
+    }
+
+    private void progress(int current, int total, boolean force) {
+        long now = System.nanoTime();
+        if (!force && (current - lastProgressBytes < builder.progressStep || now - lastProgress < TimeUnit.MILLISECONDS.toNanos(builder.progressInterval)))
+            return;
+
+        lastProgress = now;
+        lastProgressBytes = current;
+        NetworkManager.onProgress(this, current, total);
     }
 
     private void check() throws NetRequestException {
+        if (timedOut || (deadline != 0 && System.nanoTime() - deadline >= 0))
+            throw new NetRequestException(this, new TimeoutException(String.format("Deadline of %d ms exceeded", builder.deadline)));
         if (cancelled)
             throw new NetRequestException();
     }
 
+    //Clamps a timeout to the time left until the deadline
+    private static int timeout(int timeout, long deadline) throws TimeoutException {
+        if (deadline == 0)
+            return timeout;
+
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime() + 999_999);
+        if (remaining <= 0)
+            throw new TimeoutException("Deadline exceeded");
+        return (int) Math.min(timeout, remaining);
+    }
+
+    private void expire() {
+        timedOut = true;
+        abort();
+    }
+
+    //Unblocks the thread executing this request, wherever it is waiting
+    private void abort() {
+        synchronized (this) {
+            if (waiting != null) {
+                interruptedWaiting = true;
+                waiting.interrupt();
+            }
+        }
+
+        HttpURLConnection c = connection;
+        if (c != null)
+            c.disconnect();
+    }
+
     public void cancel() {
         cancel(false);
     }
@@ -112,13 +299,26 @@ public class Request {
     public void cancel(boolean force) {
         if (!force && !isCancellable())
             throw new IllegalStateException("Request is not cancellable");
-        else cancelled = true;
+
+        cancelled = true;
+        abort();
+    }
+
+    /**
+     * @return The time in nanoseconds this request waited for its host limits
+     */
+    public long queueTime() {
+        return queueTime;
     }
 
     public boolean isCancellable() {
         return builder.cancellable;
     }
 
+    RequestKey key() {
+        return key;
+    }
+
     public RequestBuilder builder() {
         return builder;
     }
@@ -130,4 +330,53 @@ public class Request {
     public Method method() {
         return builder.method;
     }
+
+    @FunctionalInterface
+    private interface BodyReader<T> {
+        T read(HttpURLConnection connection, InputStream is) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface ErrorReader<T> {
+        T read(Response error) throws Exception;
+    }
+
+    //Counts the bytes read from the connection for the host metrics
+    private class CountingInputStream extends FilterInputStream {
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1)
+                received++;
+            return b;
+        }
+
+        public int read(byte @NotNull [] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0)
+                received += read;
+            return read;
+        }
+
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            received += skipped;
+            return skipped;
+        }
+    }
+
+    //Lets exceptions thrown by a StreamHandler skip the error response handling
+    private static class HandlerException extends Exception {
+        HandlerException(Exception cause) {
+            super(cause);
+        }
+
+        public synchronized Exception getCause() {
+            return (Exception) super.getCause();
+        }
+    }
 }
\ No newline at end of file
@@ -6,9 +6,16 @@ import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.Range;
 import org.json.JSONArray;
 import org.json.JSONObject;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
 
+import java.io.File;
+import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class RequestBuilder {
@@ -22,7 +29,17 @@ public class RequestBuilder {
     protected int connectTO;
     protected int readTO;
     protected int bufferSize;
+    protected long deadline;
+    protected int spillThreshold;
 
+    protected int progressInterval;
+    protected int progressStep;
+
+    protected int rateLimit;
+    protected int maxConcurrent;
+    protected LimitPolicy limitPolicy;
+
+    protected Priority priority = Priority.NORMAL;
     protected boolean cancellable = true;
 
     protected RequestBuilder(String url, Method method) {
@@ -38,6 +55,35 @@ public class RequestBuilder {
         connectTO = NetworkConfig.MAX_CONNECT_TIMEOUT;
         readTO = NetworkConfig.MAX_READ_TIMEOUT;
         bufferSize = NetworkConfig.BUFFER_SIZE;
+        deadline = NetworkConfig.MAX_REQUEST_TIME;
+        spillThreshold = NetworkConfig.SPILL_THRESHOLD;
+        progressInterval = NetworkConfig.PROGRESS_INTERVAL;
+        progressStep = NetworkConfig.PROGRESS_STEP;
+
+        //Default host limits
+        rateLimit = NetworkConfig.MAX_REQUESTS_PER_SECOND;
+        maxConcurrent = NetworkConfig.MAX_CONCURRENT_PER_HOST;
+        limitPolicy = NetworkConfig.HOST_LIMIT_POLICY != null ? NetworkConfig.HOST_LIMIT_POLICY : LimitPolicy.QUEUE;
+    }
+
+    //Copies every setting, changes to the copy do not affect this builder
+    RequestBuilder copy() {
+        RequestBuilder copy = new RequestBuilder(url, method);
+        copy.headers = new HashMap<>(headers);
+        copy.body = body;
+        copy.connectTO = connectTO;
+        copy.readTO = readTO;
+        copy.bufferSize = bufferSize;
+        copy.deadline = deadline;
+        copy.spillThreshold = spillThreshold;
+        copy.progressInterval = progressInterval;
+        copy.progressStep = progressStep;
+        copy.rateLimit = rateLimit;
+        copy.maxConcurrent = maxConcurrent;
+        copy.limitPolicy = limitPolicy;
+        copy.priority = priority;
+        copy.cancellable = cancellable;
+        return copy;
     }
 
     //Main methods
@@ -92,11 +138,75 @@ public class RequestBuilder {
         return this;
     }
 
+    /**
+     * The maximum time in milliseconds the whole request may take, including waiting for host limits.
+     * When the deadline passes the connection is closed and the request fails, 0 means no deadline
+     */
+    public RequestBuilder deadline(@Range(from = 0, to = Long.MAX_VALUE) long deadline) {
+        this.deadline = deadline;
+        return this;
+    }
+
+    /**
+     * Response bodies larger than this amount of bytes are stored in a temporary file instead of memory, 0 keeps every body in memory
+     */
+    public RequestBuilder spillThreshold(@Range(from = 0, to = Integer.MAX_VALUE) int bytes) {
+        this.spillThreshold = bytes;
+        return this;
+    }
+
     public RequestBuilder bufferSize(@Range(from = 1, to = Integer.MAX_VALUE) int size) {
         this.bufferSize = size;
         return this;
     }
 
+    /**
+     * The minimum time in milliseconds between two progress updates, 0 reports every read
+     */
+    public RequestBuilder progressInterval(@Range(from = 0, to = Integer.MAX_VALUE) int interval) {
+        this.progressInterval = interval;
+        return this;
+    }
+
+    /**
+     * The minimum amount of bytes read between two progress updates, 0 reports every read
+     */
+    public RequestBuilder progressStep(@Range(from = 0, to = Integer.MAX_VALUE) int bytes) {
+        this.progressStep = bytes;
+        return this;
+    }
+
+    /**
+     * Limits the amount of requests per second sent to the host of this request, 0 means unlimited.
+     * The limit is shared by every request to the host, when requests set different limits the strictest one applies.
+     */
+    public RequestBuilder rateLimit(@Range(from = 0, to = Integer.MAX_VALUE) int requestsPerSecond) {
+        this.rateLimit = requestsPerSecond;
+        return this;
+    }
+
+    /**
+     * Limits the amount of requests in flight to the host of this request, 0 means unlimited.
+     * The limit is shared by every request to the host, when requests set different limits the strictest one applies.
+     */
+    public RequestBuilder maxConcurrent(@Range(from = 0, to = Integer.MAX_VALUE) int maxConcurrent) {
+        this.maxConcurrent = maxConcurrent;
+        return this;
+    }
+
+    public RequestBuilder limitPolicy(@NotNull LimitPolicy policy) {
+        this.limitPolicy = policy;
+        return this;
+    }
+
+    /**
+     * The priority of this request when it is sent with {@link #async(Callback)}
+     */
+    public RequestBuilder priority(@NotNull Priority priority) {
+        this.priority = priority;
+        return this;
+    }
+
     public RequestBuilder cancellable(boolean cancellable) {
         this.cancellable = cancellable;
         return this;
@@ -107,10 +217,63 @@ public class RequestBuilder {
         return new Request(this).get();
     }
 
+    /**
+     * Sends the request and passes the response body to the handler while it is being received, the body is never buffered in memory.
+     * @return The result of the handler
+     */
+    public <T> T stream(@NotNull StreamHandler<T> handler) throws NetRequestException {
+        return new Request(this).stream(handler);
+    }
+
+    /**
+     * Sends the request and parses the HTML body while it is being received. The download stops as soon as the handler returns.
+     * @return The result of the handler
+     */
+    public <T> T streamHTML(@NotNull HTMLHandler<T> handler) throws NetRequestException {
+        return stream((response, body) -> {
+            try (StreamParser parser = new StreamParser(Parser.htmlParser())
+                    .parse(new InputStreamReader(body, StandardCharsets.UTF_8), response.url())) {
+                return handler.handle(response, parser);
+            }
+        });
+    }
+
+    /**
+     * Sends the request and collects the elements matching the query, the download stops once enough elements are found.
+     * @param query The CSS query to match
+     * @param limit The maximum amount of elements to collect
+     */
+    public List<Element> selectHTML(@NotNull String query, @Range(from = 1, to = Integer.MAX_VALUE) int limit) throws NetRequestException {
+        return streamHTML((response, parser) -> {
+            List<Element> elements = new ArrayList<>();
+            Element element;
+            while (elements.size() < limit && (element = parser.selectNext(query)) != null)
+                elements.add(element);
+            return elements;
+        });
+    }
+
+    /**
+     * Creates a download that fetches the file over multiple connections and can resume after a failure
+     * @param destination The file to download to
+     * @see SegmentedDownload
+     */
+    public SegmentedDownload download(@NotNull File destination) {
+        return new SegmentedDownload(this, destination);
+    }
+
+    /**
+     * Creates a stream that passes every event of a long-lived response to the handler while it is being received
+     * @see EventStream
+     */
+    public EventStream events(@NotNull EventHandler handler) {
+        return new EventStream(this, handler);
+    }
+
     public void async(Callback callback) {
         Request request = new Request(this);
         if (NetworkManager.addCallback(callback, request)) {
-            new Thread(() -> {
+            NetworkManager.dispatch(priority, url, () -> {
                 try {
                     Response response = request.get();
                     if (request.cancelCallback)
@@ -121,7 +284,7 @@ public class RequestBuilder {
                         return;
                     NetworkManager.onComplete(request, null, e);
                 }
-            }).start();
+            });
         }
     }
 }
\ No newline at end of file
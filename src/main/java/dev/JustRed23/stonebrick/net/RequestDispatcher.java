@@ -0,0 +1,174 @@
+package dev.JustRed23.stonebrick.net;
+
+import dev.JustRed23.stonebrick.util.LatencyHistogram;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs asynchronous requests on a fixed set of worker threads, higher priority requests first.
+ * <p>
+ * To prevent starvation a waiting request is treated as one priority higher for every {@link NetworkConfig#PRIORITY_AGING} milliseconds it has waited.
+ * A single host can occupy at most {@link NetworkConfig#DISPATCHER_THREADS_PER_HOST} workers, or its {@link HostLimiter#maxConcurrent()} if that is lower,
+ * so a slow or throttled host can not take every worker away from other hosts. Requests over that limit wait in the queue instead of on a worker.
+ */
+final class RequestDispatcher {
+
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    //Per priority, the waiting tasks of every host in arrival order
+    private final Map<String, ArrayDeque<Task>>[] queues;
+    private final int[] queued;
+    private final Map<String, Integer> running = new HashMap<>();
+    private final LatencyHistogram[] waits;
+    private int generation;
+    private boolean started;
+    private int perHost;
+
+    @SuppressWarnings("unchecked")
+    RequestDispatcher() {
+        queues = new Map[PRIORITIES.length];
+        queued = new int[PRIORITIES.length];
+        waits = new LatencyHistogram[PRIORITIES.length];
+        for (int i = 0; i < PRIORITIES.length; i++) {
+            queues[i] = new LinkedHashMap<>();
+            waits[i] = new LatencyHistogram();
+        }
+    }
+
+    void dispatch(Priority priority, String host, Runnable runnable) {
+        lock.lock();
+        try {
+            if (!started)
+                start();
+
+            queues[priority.ordinal()].computeIfAbsent(host, key -> new ArrayDeque<>()).add(new Task(runnable, host, priority.ordinal(), System.nanoTime()));
+            queued[priority.ordinal()]++;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    LatencyHistogram.Snapshot queueWait(Priority priority) {
+        return waits[priority.ordinal()].snapshot();
+    }
+
+    int queued(Priority priority) {
+        lock.lock();
+        try {
+            return queued[priority.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lets the workers finish the queued requests and stop, the next request starts a new set of workers
+     */
+    void shutdown() {
+        lock.lock();
+        try {
+            if (!started)
+                return;
+
+            started = false;
+            generation++;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void start() {
+        started = true;
+        int threads = NetworkConfig.DISPATCHER_THREADS > 0 ? NetworkConfig.DISPATCHER_THREADS : 64;
+        perHost = NetworkConfig.DISPATCHER_THREADS_PER_HOST > 0 ? NetworkConfig.DISPATCHER_THREADS_PER_HOST : Math.max(1, threads / 4);
+
+        final int generation = this.generation;
+        for (int i = 0; i < threads; i++) {
+            Thread t = new Thread(() -> work(generation));
+            t.setName("Dispatcher Thread " + (i + 1));
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    private void work(int generation) {
+        while (true) {
+            Task task;
+
+            lock.lock();
+            try {
+                while ((task = next()) == null) {
+                    if (generation != this.generation)
+                        return;
+                    notEmpty.awaitUninterruptibly();
+                }
+                running.merge(task.host, 1, Integer::sum);
+            } finally {
+                lock.unlock();
+            }
+
+            waits[task.priority].record(System.nanoTime() - task.enqueued);
+            try {
+                task.runnable.run();
+            } catch (Throwable ignored) { //A failing request must not take down the worker
+            } finally {
+                lock.lock();
+                try {
+                    running.computeIfPresent(task.host, (host, count) -> count == 1 ? null : count - 1);
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    //Takes the task whose priority is best after aging, from the hosts that have a worker available, null if there is none
+    private Task next() {
+        long now = System.nanoTime();
+        long aging = TimeUnit.MILLISECONDS.toNanos(NetworkConfig.PRIORITY_AGING > 0 ? NetworkConfig.PRIORITY_AGING : 1000);
+
+        Task best = null;
+        long bestRank = Long.MAX_VALUE;
+        for (int i = 0; i < queues.length; i++) {
+            for (ArrayDeque<Task> hostQueue : queues[i].values()) {
+                Task head = hostQueue.peek();
+                if (head == null || running.getOrDefault(head.host, 0) >= limit(head.host))
+                    continue;
+
+                long rank = i - (now - head.enqueued) / aging;
+                if (rank < bestRank || (rank == bestRank && head.enqueued < best.enqueued)) {
+                    best = head;
+                    bestRank = rank;
+                }
+            }
+        }
+
+        if (best != null) {
+            Map<String, ArrayDeque<Task>> queue = queues[best.priority];
+            ArrayDeque<Task> hostQueue = queue.get(best.host);
+            hostQueue.poll();
+            if (hostQueue.isEmpty())
+                queue.remove(best.host);
+            queued[best.priority]--;
+        }
+        return best;
+    }
+
+    //Workers beyond the concurrency limit of the host would only wait for the limiter
+    private int limit(String host) {
+        int maxConcurrent = NetworkManager.maxConcurrent(host);
+        return maxConcurrent > 0 ? Math.min(perHost, maxConcurrent) : perHost;
+    }
+
+    private record Task(Runnable runnable, String host, int priority, long enqueued) {}
+}
@@ -0,0 +1,43 @@
+package dev.JustRed23.stonebrick.net;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Identifies requests that can share a single connection. The hash is computed once when the request is created,
+ * two keys are only equal when method, url and the full body content match.
+ */
+final class RequestKey {
+
+    private final Method method;
+    private final String url;
+    private final byte[] body;
+    private final int hash;
+
+    RequestKey(Method method, String url, byte[] body) {
+        this.method = method;
+        this.url = url;
+        this.body = body;
+        this.hash = 31 * (31 * method.hashCode() + url.hashCode()) + Arrays.hashCode(body);
+    }
+
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof RequestKey other))
+            return false;
+
+        return hash == other.hash
+                && method == other.method
+                && url.equals(other.url)
+                && Arrays.equals(body, other.body);
+    }
+
+    public int hashCode() {
+        return hash;
+    }
+
+    public String toString() {
+        return String.format("%s %s (%d bytes)", method.name(), url, body != null ? body.length : 0);
+    }
+}
@@ -3,31 +3,111 @@ package dev.JustRed23.stonebrick.net;
 import dev.JustRed23.stonebrick.exceptions.NetResponseException;
 import org.json.JSONArray;
 import org.json.JSONObject;
+import org.json.JSONTokener;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
 import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
-public class Response {
+public class Response implements Closeable {
+
+    private static final Cleaner CLEANER = Cleaner.create();
+    private static final Set<Spill> SPILLS = ConcurrentHashMap.newKeySet();
+    private static final AtomicBoolean HOOK_REGISTERED = new AtomicBoolean();
 
     private final String url;
     private final byte[] data;
+    private final File file;
+    private final long length;
+    private final Spill spill;
+    private final Cleaner.Cleanable cleanable;
     private final int responseCode;
     private final String responseMessage;
     private final Map<String, List<String>> headers;
+    private final long queueTime;
+
+    protected Response(byte[] data, String url, HttpURLConnection connection, long queueTime) throws IOException {
+        this(data, null, data != null ? data.length : 0, url, connection, queueTime);
+    }
 
-    protected Response(byte[] data, String url, HttpURLConnection connection) throws IOException {
+    /**
+     * Creates a response with a body that was spilled to a temporary file.
+     * The file is deleted once every handle of the response is closed or garbage collected, files that are still in use are deleted when the JVM exits.
+     */
+    protected Response(File file, long length, String url, HttpURLConnection connection, long queueTime) throws IOException {
+        this(null, file, length, url, connection, queueTime);
+    }
+
+    private Response(byte[] data, File file, long length, String url, HttpURLConnection connection, long queueTime) throws IOException {
         this.data = data;
+        this.file = file;
+        this.length = length;
+        this.spill = file != null ? Spill.create(file) : null;
+        this.cleanable = spill != null ? CLEANER.register(this, new Release(spill)) : null;
         this.url = url;
+        this.queueTime = queueTime;
         this.responseCode = connection.getResponseCode();
         this.responseMessage = connection.getResponseMessage();
-        this.headers = connection.getHeaderFields();
+        this.headers = headers(connection.getHeaderFields());
+    }
+
+    //Header names are case-insensitive, the status line stored under the null key is left out
+    private static Map<String, List<String>> headers(Map<String, List<String>> fields) {
+        Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        fields.forEach((name, values) -> {
+            if (name != null)
+                headers.put(name, values);
+        });
+        return headers;
+    }
+
+    //A new handle to the same spilled body
+    private Response(Response response) {
+        this.data = null;
+        this.file = response.file;
+        this.length = response.length;
+        this.spill = response.spill;
+        spill.retain();
+        this.cleanable = CLEANER.register(this, new Release(spill));
+        this.url = response.url;
+        this.queueTime = response.queueTime;
+        this.responseCode = response.responseCode;
+        this.responseMessage = response.responseMessage;
+        this.headers = response.headers;
+    }
+
+    /**
+     * Creates a handle that can be closed independently of this one, a spilled body is kept until every handle is closed.
+     * Bodies kept in memory are shared as is.
+     * @throws IllegalStateException If this response is spilled and already closed
+     */
+    Response share() {
+        return spill != null ? new Response(this) : this;
     }
 
     public String url() {
@@ -42,8 +122,16 @@ public class Response {
         return responseMessage;
     }
 
+    /**
+     * @return The time in nanoseconds the request waited for its host limits
+     */
+    public long queueTime() {
+        return queueTime;
+    }
+
     public String header(String name) {
-        return headers.get(name).get(0);
+        List<String> values = headers.get(name);
+        return values != null && !values.isEmpty() ? values.get(0) : null;
     }
 
     public List<String> headerList(String name) {
@@ -72,38 +160,170 @@ public class Response {
         return this;
     }
 
+    /**
+     * @return The size of the body in bytes
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * @return true if the body is stored in a temporary file instead of memory
+     */
+    public boolean isSpilled() {
+        return file != null;
+    }
+
+    /**
+     * Returns the body as a byte array. A spilled body is read into memory on every call, prefer {@link #asStream()} or {@link #asByteBuffer()} for those.
+     */
     public byte[] asBytes() {
-        return data;
+        if (file == null)
+            return data;
+
+        try {
+            return Files.readAllBytes(file.toPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     public String asString() {
-        if (data == null || data.length == 0)
+        if (length == 0)
             return null;
-        return new String(data, StandardCharsets.UTF_8);
+        if (file == null)
+            return new String(data, StandardCharsets.UTF_8);
+        return StandardCharsets.UTF_8.decode(asByteBuffer()).toString();
+    }
+
+    public InputStream asStream() {
+        if (file == null)
+            return new ByteArrayInputStream(data != null ? data : new byte[0]);
+
+        try {
+            return new BufferedInputStream(Files.newInputStream(file.toPath()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return A read-only view of the body, a spilled body is memory mapped instead of read onto the heap
+     */
+    public ByteBuffer asByteBuffer() {
+        if (file == null)
+            return ByteBuffer.wrap(data != null ? data : new byte[0]).asReadOnlyBuffer();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     public Document asHTML() {
         return Jsoup.parse(asString());
     }
 
+    /**
+     * @return A parser that builds the document element by element as they are selected
+     * @see StreamParser
+     */
+    public StreamParser asHTMLStream() {
+        return new StreamParser(Parser.htmlParser()).parse(new InputStreamReader(asStream(), StandardCharsets.UTF_8), url);
+    }
+
     public JSONObject asJSONObject() {
-        String json = asString();
-        return json == null ? new JSONObject() : new JSONObject(json);
+        if (length == 0)
+            return new JSONObject();
+        return new JSONObject(new JSONTokener(asStream()));
     }
 
     public JSONArray asJSONArray() {
-        String json = asString();
-        return json == null ? new JSONArray() : new JSONArray(json);
+        if (length == 0)
+            return new JSONArray();
+        return new JSONArray(new JSONTokener(asStream()));
+    }
+
+    /**
+     * @return A reader that decodes the body token by token, without building the full document in memory
+     * @see JSONStreamReader
+     */
+    public JSONStreamReader asJSONStream() {
+        return new JSONStreamReader(asStream());
     }
 
     public void asFile(File destination) throws IOException {
+        if (file != null) {
+            Files.copy(file.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return;
+        }
+
         try (FileOutputStream fos = new FileOutputStream(destination)) {
             fos.write(data);
             fos.flush();
         }
     }
 
+    /**
+     * Releases the temporary file of a spilled body, the body can not be read through this response afterwards. Does nothing for bodies kept in memory.
+     * <p>
+     * Every callback of a deduplicated request receives its own handle, the file is deleted once all of them are closed.
+     */
+    public void close() {
+        if (cleanable != null)
+            cleanable.clean();
+    }
+
     public String toString() {
-        return String.format("%s, %d %s, %d bytes", url, responseCode, responseMessage, data != null ? data.length : 0);
+        return String.format("%s, %d %s, %d bytes", url, responseCode, responseMessage, length);
+    }
+
+    //Does not reference the response, so the response can be collected
+    private record Release(Spill spill) implements Runnable {
+        public void run() {
+            spill.release();
+        }
+    }
+
+    //A spilled body shared by every handle of a response
+    private static final class Spill {
+
+        private final File file;
+        private final AtomicInteger handles = new AtomicInteger(1);
+
+        private Spill(File file) {
+            this.file = file;
+        }
+
+        static Spill create(File file) {
+            if (HOOK_REGISTERED.compareAndSet(false, true))
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> SPILLS.forEach(Spill::delete), "Response Cleanup"));
+
+            Spill spill = new Spill(file);
+            SPILLS.add(spill);
+            return spill;
+        }
+
+        void retain() {
+            int count;
+            do {
+                count = handles.get();
+                if (count == 0)
+                    throw new IllegalStateException("Response is already closed");
+            } while (!handles.compareAndSet(count, count + 1));
+        }
+
+        void release() {
+            if (handles.decrementAndGet() == 0)
+                delete();
+        }
+
+        void delete() {
+            SPILLS.remove(this);
+            try {
+                Files.deleteIfExists(file.toPath());
+            } catch (IOException ignored) {}
+        }
     }
 }
\ No newline at end of file
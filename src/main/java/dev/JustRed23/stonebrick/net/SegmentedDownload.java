@@ -0,0 +1,326 @@
+package dev.JustRed23.stonebrick.net;
+
+import dev.JustRed23.stonebrick.exceptions.NetRequestException;
+import dev.JustRed23.stonebrick.util.BufferPool;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Range;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Downloads a file over multiple connections, each fetching a byte range of the file into its position in the destination.
+ * <p>
+ * Progress is persisted next to the destination in a {@code .download} file, calling {@link #execute()} again after a failure resumes where it left off.
+ * When the server does not support ranges the file is downloaded over a single connection.
+ */
+public class SegmentedDownload {
+
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes \\d+-\\d+/(\\d+)");
+    private static final long SAVE_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    private final RequestBuilder builder;
+    private final Request request;
+    private final File destination;
+    private final File stateFile;
+
+    private int segments;
+    private Callback callback;
+
+    //Download state
+    private long length;
+    private String validator;
+    private long[] starts, ends;
+    private AtomicLongArray done;
+    private volatile boolean stopped;
+    private long lastSave;
+    private int lastPercent = -1;
+
+    protected SegmentedDownload(@NotNull RequestBuilder builder, @NotNull File destination) {
+        this.builder = builder;
+        this.request = new Request(builder);
+        this.destination = destination;
+        this.stateFile = new File(destination.getPath() + ".download");
+        this.segments = NetworkConfig.DOWNLOAD_SEGMENTS > 0 ? NetworkConfig.DOWNLOAD_SEGMENTS : 4;
+    }
+
+    /**
+     * The amount of connections used to download the file
+     */
+    public SegmentedDownload segments(@Range(from = 1, to = 64) int segments) {
+        this.segments = segments;
+        return this;
+    }
+
+    /**
+     * Receives the aggregated progress of all segments and the result of the download.
+     * A completed download is reported to {@link Callback#downloaded(Request, File)}, a failed one to {@link Callback#response(Request, Response, NetRequestException)}.
+     * Files larger than 2 GB report their progress in KB.
+     */
+    public SegmentedDownload callback(@Nullable Callback callback) {
+        this.callback = callback;
+        return this;
+    }
+
+    /**
+     * Downloads the file, blocking until it is complete
+     * @return The destination file
+     * @throws NetRequestException If the download failed, the progress so far is kept and used by the next call
+     */
+    public File execute() throws NetRequestException {
+        stopped = false;
+        lastPercent = -1;
+        try {
+            boolean ranges = range(0, 0).stream((response, body) -> {
+                String contentRange = response.header("Content-Range");
+                Matcher matcher = contentRange != null ? CONTENT_RANGE.matcher(contentRange) : null;
+                boolean partial = response.responseCode() == HttpURLConnection.HTTP_PARTIAL && matcher != null && matcher.matches();
+                length = partial ? Long.parseLong(matcher.group(1)) : -1;
+                validator = Objects.requireNonNullElse(response.header("ETag"), Objects.requireNonNullElse(response.header("Last-Modified"), ""));
+                return partial;
+            });
+
+            if (!ranges || length <= 0) {
+                single();
+                return destination;
+            }
+
+            if (!loadState())
+                createState();
+
+            download();
+            Files.deleteIfExists(stateFile.toPath());
+        } catch (Exception e) {
+            NetRequestException exception = e instanceof NetRequestException ex ? ex : new NetRequestException(request, e);
+            if (callback != null)
+                callback.response(request, null, exception);
+            throw exception;
+        }
+
+        if (callback != null)
+            callback.downloaded(request, destination);
+        return destination;
+    }
+
+    //Streams the body straight to the destination, nothing is buffered in memory or spilled
+    private void single() throws NetRequestException, IOException {
+        builder.stream((response, body) -> {
+            if (!response.isSuccess())
+                throw new IOException(response.toString());
+
+            String contentLength = response.header("Content-Length");
+            length = contentLength != null ? Long.parseLong(contentLength) : -1;
+
+            byte[] buffer = BufferPool.acquire(builder.bufferSize);
+            try (OutputStream os = Files.newOutputStream(destination.toPath())) {
+                long current = 0;
+                int read;
+                while ((read = body.read(buffer)) != -1) {
+                    os.write(buffer, 0, read);
+                    current += read;
+                    report(current);
+                }
+            } finally {
+                BufferPool.release(buffer);
+            }
+            return null;
+        });
+        Files.deleteIfExists(stateFile.toPath());
+    }
+
+    private void download() throws Exception {
+        final AtomicInteger threadId = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(starts.length, r -> {
+            Thread t = new Thread(r);
+            t.setName("Download Thread " + threadId.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        try (RandomAccessFile file = new RandomAccessFile(destination, "rw")) {
+            if (file.length() != length)
+                file.setLength(length);
+
+            FileChannel channel = file.getChannel();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < starts.length; i++) {
+                final int segment = i;
+                futures.add(executor.submit(() -> {
+                    fetch(segment, channel);
+                    return null;
+                }));
+            }
+
+            Exception failure = null;
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    stopped = true;
+                    if (failure == null)
+                        failure = e.getCause() instanceof Exception ex ? ex : new IOException(e.getCause());
+                }
+            }
+
+            saveState();
+            if (failure != null)
+                throw failure;
+            channel.force(false);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void fetch(int segment, FileChannel channel) throws Exception {
+        long from = starts[segment] + done.get(segment);
+        if (stopped || from > ends[segment])
+            return;
+
+        range(from, ends[segment]).stream((response, body) -> {
+            if (response.responseCode() != HttpURLConnection.HTTP_PARTIAL)
+                throw new IOException("Server did not return the requested range: " + response.responseCode());
+
+            long position = from;
+            byte[] buffer = BufferPool.acquire(builder.bufferSize);
+            try {
+                int read;
+                while (!stopped && position <= ends[segment] && (read = body.read(buffer, 0, (int) Math.min(buffer.length, ends[segment] - position + 1))) != -1) {
+                    ByteBuffer data = ByteBuffer.wrap(buffer, 0, read);
+                    while (data.hasRemaining())
+                        position += channel.write(data, position);
+
+                    done.addAndGet(segment, read);
+                    progress();
+                }
+            } finally {
+                BufferPool.release(buffer);
+            }
+
+            if (!stopped && position <= ends[segment])
+                throw new IOException("Segment " + segment + " ended early at " + position);
+            return null;
+        });
+    }
+
+    //Every connection goes through Request so it shares the host limits, the deadline and the metrics of normal requests
+    private RequestBuilder range(long from, long to) {
+        return builder.copy()
+                .header("Range", "bytes=" + from + "-" + to)
+                .header("Accept-Encoding", "identity");
+    }
+
+    //Progress, summed and delivered under the lock so segments never report it out of order
+    private synchronized void progress() throws IOException {
+        long now = System.nanoTime();
+        if (now - lastSave >= SAVE_INTERVAL) {
+            lastSave = now;
+            saveState();
+        }
+
+        if (callback == null)
+            return;
+
+        long current = 0;
+        for (int i = 0; i < done.length(); i++)
+            current += done.get(i);
+        report(current);
+    }
+
+    private void report(long current) {
+        if (callback == null || length <= 0)
+            return;
+
+        int percent = (int) (current * 100 / length);
+        if (percent <= lastPercent)
+            return;
+        lastPercent = percent;
+
+        //Callback only supports int sizes
+        boolean large = length > Integer.MAX_VALUE;
+        callback.progress(request, (int) (large ? current / 1024 : current), (int) (large ? length / 1024 : length), percent);
+    }
+
+    //State
+    private void createState() {
+        int count = (int) Math.max(1, Math.min(segments, length / (64 * 1024)));
+        long size = length / count;
+
+        starts = new long[count];
+        ends = new long[count];
+        done = new AtomicLongArray(count);
+        for (int i = 0; i < count; i++) {
+            starts[i] = i * size;
+            ends[i] = i == count - 1 ? length - 1 : (i + 1) * size - 1;
+        }
+    }
+
+    private boolean loadState() {
+        if (!stateFile.exists() || !destination.exists())
+            return false;
+
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(stateFile.toPath(), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+
+            if (!builder.url.equals(properties.getProperty("url"))
+                    || length != Long.parseLong(properties.getProperty("length"))
+                    || !validator.equals(properties.getProperty("validator")))
+                return false;
+
+            int count = Integer.parseInt(properties.getProperty("segments"));
+            starts = new long[count];
+            ends = new long[count];
+            done = new AtomicLongArray(count);
+            for (int i = 0; i < count; i++) {
+                String[] segment = properties.getProperty("segment." + i).split(",");
+                starts[i] = Long.parseLong(segment[0]);
+                ends[i] = Long.parseLong(segment[1]);
+                done.set(i, Long.parseLong(segment[2]));
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    private synchronized void saveState() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("url", builder.url);
+        properties.setProperty("length", String.valueOf(length));
+        properties.setProperty("validator", validator);
+        properties.setProperty("segments", String.valueOf(starts.length));
+        for (int i = 0; i < starts.length; i++)
+            properties.setProperty("segment." + i, starts[i] + "," + ends[i] + "," + done.get(i));
+
+        File temp = new File(stateFile.getPath() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            properties.store(writer, null);
+        }
+        Files.move(temp.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
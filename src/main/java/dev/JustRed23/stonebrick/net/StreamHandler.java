@@ -0,0 +1,14 @@
+package dev.JustRed23.stonebrick.net;
+
+import java.io.InputStream;
+
+/**
+ * Handles a response while it is being received.
+ * The response passed to the handler contains the status and headers but no data, the body can only be read from the stream while the handler runs.
+ * <p>
+ * When the server responds with an error, the buffered error body is passed to the handler instead.
+ */
+@FunctionalInterface
+public interface StreamHandler<T> {
+    T handle(Response response, InputStream body) throws Exception;
+}
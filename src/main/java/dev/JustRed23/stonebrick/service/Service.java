@@ -4,9 +4,17 @@ import dev.JustRed23.stonebrick.app.Application;
 import dev.JustRed23.stonebrick.log.SBLogger;
 import org.slf4j.Logger;
 
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
 public abstract class Service {
 
     private long lastRun = 0;
+    //Scheduling state, managed by the ServicePool while holding the lock
+    final Object schedulingLock = new Object();
+    int running;
+    boolean deferred;
+
     protected final Logger LOGGER;
     protected Application application;
 
@@ -17,6 +25,20 @@ public abstract class Service {
     public abstract boolean shouldRun();
     public abstract long delayBetweenRuns();
 
+    /**
+     * The amount of runs of this service that may be in progress at the same time, by default a run never overlaps the previous one
+     */
+    public int maxConcurrentRuns() {
+        return 1;
+    }
+
+    /**
+     * The time in milliseconds after which a run is interrupted and reported to {@link #onError(Exception)} with a {@link java.util.concurrent.TimeoutException}, 0 means no timeout
+     */
+    public long runTimeout() {
+        return 0;
+    }
+
     public void init() {}
     public abstract void run() throws Exception;
 
@@ -33,23 +55,39 @@ public abstract class Service {
     }
 
     public final void startService() {
-        long cur = System.currentTimeMillis();
-        long next = lastRun + delayBetweenRuns();
-
-        if (cur >= next) {
-            if (!shouldRun())
-                return;
+        if (System.currentTimeMillis() >= lastRun + delayBetweenRuns() && shouldRun())
+            execute(null);
+    }
 
-            init();
+    /**
+     * Runs the service without checking if it is due or should run, the {@link ServicePool} schedules it
+     * @param timedOut Asked when the run returned, a run that timed out is reported with the exception it returns instead of its own result
+     */
+    final void execute(Supplier<TimeoutException> timedOut) {
+        long cur = System.currentTimeMillis();
+        init();
 
+        try {
+            Exception error = null;
             try {
                 run();
             } catch (Exception e) {
-                onError(e);
-            } finally {
-                onComplete();
-                lastRun = cur;
+                error = e;
             }
+
+            TimeoutException timeout = timedOut != null ? timedOut.get() : null;
+            if (timeout != null) {
+                //Usually the InterruptedException of the interrupted run
+                if (error != null)
+                    timeout.initCause(error);
+                error = timeout;
+            }
+
+            if (error != null)
+                onError(error);
+        } finally {
+            onComplete();
+            lastRun = cur;
         }
     }
 }
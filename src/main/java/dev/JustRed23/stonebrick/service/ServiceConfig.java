@@ -0,0 +1,20 @@
+package dev.JustRed23.stonebrick.service;
+
+import dev.JustRed23.abcm.ConfigField;
+import dev.JustRed23.abcm.Configurable;
+
+@Configurable
+public final class ServiceConfig {
+
+    /**
+     * The amount of threads services run on, 0 uses one thread per processor
+     */
+    @ConfigField(defaultValue = "0", optional = true)
+    public static int WORKER_THREADS;
+
+    /**
+     * The time in milliseconds shutting down the service pool waits for runs in progress to finish
+     */
+    @ConfigField(defaultValue = "10000", optional = true)
+    public static int SHUTDOWN_TIMEOUT;
+}
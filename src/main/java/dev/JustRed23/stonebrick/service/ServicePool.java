@@ -2,21 +2,45 @@ package dev.JustRed23.stonebrick.service;
 
 import dev.JustRed23.stonebrick.app.Application;
 import dev.JustRed23.stonebrick.log.SBLogger;
+import dev.JustRed23.stonebrick.util.CommonThreads;
+import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Runs every service when it is due, the pool sleeps until the next service is due instead of polling.
+ * <p>
+ * Due services are checked with {@link Service#shouldRun()} and run in parallel on a pool of {@link ServiceConfig#WORKER_THREADS} workers,
+ * so a slow service or a slow check does not delay the others.
+ * A service that is due while {@link Service#maxConcurrentRuns()} runs are still in progress runs again as soon as one of them finishes.
+ */
 public class ServicePool extends Thread {
 
+    //A service that did not want to run is asked again after this time at the latest
+    private static final long RECHECK_DELAY = TimeUnit.SECONDS.toNanos(10);
+
     private final Logger LOGGER = SBLogger.getLogger(ServicePool.class);
     private final Application application;
     private final List<Service> services;
-    private static boolean init = false, stopRequested = false;
+    private final DelayQueue<ScheduledService> queue = new DelayQueue<>();
+    private volatile ExecutorService workers;
+    private boolean init = false;
+    private volatile boolean stopRequested = false;
 
     public ServicePool(Application application) {
+        super("Service Pool");
         this.application = application;
         services = new ArrayList<>();
     }
@@ -25,7 +49,10 @@ public class ServicePool extends Thread {
         try {
             Service service = serviceClass.getConstructor().newInstance();
             service.application = application;
-            services.add(service);
+            synchronized (services) {
+                services.add(service);
+            }
+            queue.add(new ScheduledService(service, System.nanoTime()));
         } catch (NoSuchMethodException | InvocationTargetException | InstantiationException | IllegalAccessException e) {
             throw new RuntimeException(e);
         }
@@ -35,17 +62,180 @@ public class ServicePool extends Thread {
         if (init)
             return;
         init = true;
-        LOGGER.info("Service pool started");
+
+        int threads = ServiceConfig.WORKER_THREADS > 0 ? ServiceConfig.WORKER_THREADS : Runtime.getRuntime().availableProcessors();
+        final AtomicInteger threadId = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r);
+            t.setName("Service Worker " + threadId.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        LOGGER.info("Service pool started with {} workers", threads);
         while (!stopRequested) {
-            services.forEach(Service::startService);
+            ScheduledService next;
             try {
-                TimeUnit.SECONDS.sleep(10);
-            } catch (InterruptedException ignored) {} //ignore this and keep running
+                next = queue.take();
+            } catch (InterruptedException e) {
+                continue; //ignore this and keep running
+            }
+
+            //Woken up by shutdown
+            if (next.service != null)
+                schedule(next.service);
         }
+        workers.shutdown();
         LOGGER.info("Shutting down");
     }
 
+    private void schedule(Service service) {
+        long start = System.nanoTime();
+
+        synchronized (service.schedulingLock) {
+            if (service.running >= Math.max(1, service.maxConcurrentRuns())) {
+                //Runs again when a run in progress finishes
+                service.deferred = true;
+                return;
+            }
+            service.running++;
+        }
+
+        try {
+            workers.execute(() -> process(service, start));
+        } catch (RejectedExecutionException e) {
+            //Shutting down
+            synchronized (service.schedulingLock) {
+                service.running--;
+            }
+        }
+    }
+
+    //Worker, the check counts as a run in progress so it never overlaps more runs than the service allows
+    private void process(Service service, long start) {
+        try {
+            if (due(service, start))
+                execute(service);
+        } finally {
+            synchronized (service.schedulingLock) {
+                service.running--;
+                if (service.deferred && !stopRequested) {
+                    service.deferred = false;
+                    queue.add(new ScheduledService(service, System.nanoTime()));
+                }
+            }
+        }
+    }
+
+    //Asks the service if it should run and queues its next check or run
+    private boolean due(Service service, long start) {
+        long delay = TimeUnit.MILLISECONDS.toNanos(Math.max(0, service.delayBetweenRuns()));
+        try {
+            if (!service.shouldRun()) {
+                queue.add(new ScheduledService(service, start + Math.min(delay, RECHECK_DELAY)));
+                return false;
+            }
+        } catch (RuntimeException e) {
+            LOGGER.error("Service " + service.getName() + " failed to check if it should run", e);
+            queue.add(new ScheduledService(service, start + Math.max(delay, RECHECK_DELAY)));
+            return false;
+        }
+
+        //Keep the period measured from the start of the run
+        queue.add(new ScheduledService(service, start + delay));
+        return true;
+    }
+
+    private void execute(Service service) {
+        Run run = new Run(Thread.currentThread());
+        long timeout = service.runTimeout();
+        ScheduledFuture<?> timer = null;
+
+        try {
+            //The timer only interrupts, the timeout is reported to the service on this worker
+            if (timeout > 0)
+                timer = CommonThreads.scheduledThread.schedule(() -> {
+                    if (run.interrupt())
+                        LOGGER.warn("Service {} did not finish within {} ms, interrupting it", service.getName(), timeout);
+                }, timeout, TimeUnit.MILLISECONDS);
+
+            service.execute(() -> run.finish() ? new TimeoutException("Service " + service.getName() + " did not finish within " + timeout + " ms") : null);
+        } catch (RejectedExecutionException e) {
+            LOGGER.error("Service " + service.getName() + " could not be run, the scheduled thread was shut down", e);
+        } catch (RuntimeException e) {
+            LOGGER.error("Service " + service.getName() + " threw outside of its run method", e);
+        } finally {
+            //No interrupt can arrive after this, one that arrived is not left for the next task of this worker
+            if (run.finish())
+                Thread.interrupted();
+            if (timer != null)
+                timer.cancel(false);
+        }
+    }
+
+    /**
+     * Stops scheduling services and waits up to {@link ServiceConfig#SHUTDOWN_TIMEOUT} milliseconds for the runs in progress to finish
+     */
     public void shutdown() {
         stopRequested = true;
+        //Wakes the pool with a marker instead of an interrupt
+        queue.add(new ScheduledService(null, System.nanoTime()));
+
+        //Called by a service
+        if (Thread.currentThread() == this)
+            return;
+
+        long timeout = ServiceConfig.SHUTDOWN_TIMEOUT > 0 ? ServiceConfig.SHUTDOWN_TIMEOUT : 10000;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        try {
+            join(timeout);
+            ExecutorService workers = this.workers;
+            if (workers != null && !workers.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS))
+                LOGGER.warn("Services are still running after waiting {} ms for them to finish", timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //Makes the timeout interrupt and the end of a run mutually exclusive, so a late interrupt can not hit the next task of the worker
+    private static final class Run {
+        private final Thread worker;
+        //Guarded by this
+        private boolean finished, timedOut;
+
+        private Run(Thread worker) {
+            this.worker = worker;
+        }
+
+        /**
+         * @return If the run was still in progress and is now interrupted
+         */
+        private synchronized boolean interrupt() {
+            if (finished)
+                return false;
+            timedOut = true;
+            worker.interrupt();
+            return true;
+        }
+
+        /**
+         * @return If the run timed out
+         */
+        private synchronized boolean finish() {
+            finished = true;
+            return timedOut;
+        }
+    }
+
+    private record ScheduledService(Service service, long due) implements Delayed {
+
+        public long getDelay(@NotNull TimeUnit unit) {
+            return unit.convert(due - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        public int compareTo(@NotNull Delayed other) {
+            return other instanceof ScheduledService scheduled ? Long.compare(due, scheduled.due)
+                    : Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
     }
 }
@@ -0,0 +1,82 @@
+package dev.JustRed23.stonebrick.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Range;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A shared pool of heap and direct I/O buffers, grouped in power of two size classes from 512 bytes to 1 MB.
+ * <p>
+ * Acquired buffers can be larger than requested. Buffers larger than the biggest size class are never pooled.
+ * A buffer must not be used anymore after it has been released.
+ */
+public final class BufferPool {
+
+    private static final int MIN_SHIFT = 9;
+    private static final int MAX_SHIFT = 20;
+    private static final int CLASSES = MAX_SHIFT - MIN_SHIFT + 1;
+    private static final int MAX_POOLED_PER_CLASS = 64;
+
+    private static final ArrayBlockingQueue<byte[]>[] HEAP = newQueues();
+    private static final ArrayBlockingQueue<ByteBuffer>[] DIRECT = newQueues();
+
+    @SuppressWarnings("unchecked")
+    private static <T> ArrayBlockingQueue<T>[] newQueues() {
+        ArrayBlockingQueue<T>[] queues = new ArrayBlockingQueue[CLASSES];
+        for (int i = 0; i < CLASSES; i++)
+            queues[i] = new ArrayBlockingQueue<>(MAX_POOLED_PER_CLASS);
+        return queues;
+    }
+
+    //Heap buffers
+    public static byte[] acquire(@Range(from = 1, to = Integer.MAX_VALUE) int minSize) {
+        int sizeClass = sizeClass(minSize);
+        if (sizeClass == -1)
+            return new byte[minSize];
+
+        byte[] buffer = HEAP[sizeClass].poll();
+        return buffer != null ? buffer : new byte[1 << (sizeClass + MIN_SHIFT)];
+    }
+
+    public static void release(byte @NotNull [] buffer) {
+        int sizeClass = exactSizeClass(buffer.length);
+        if (sizeClass != -1)
+            HEAP[sizeClass].offer(buffer);
+    }
+
+    //Direct buffers
+    public static ByteBuffer acquireDirect(@Range(from = 1, to = Integer.MAX_VALUE) int minSize) {
+        int sizeClass = sizeClass(minSize);
+        if (sizeClass == -1)
+            return ByteBuffer.allocateDirect(minSize);
+
+        ByteBuffer buffer = DIRECT[sizeClass].poll();
+        return buffer != null ? buffer.clear() : ByteBuffer.allocateDirect(1 << (sizeClass + MIN_SHIFT));
+    }
+
+    public static void releaseDirect(@NotNull ByteBuffer buffer) {
+        if (!buffer.isDirect())
+            return;
+
+        int sizeClass = exactSizeClass(buffer.capacity());
+        if (sizeClass != -1)
+            DIRECT[sizeClass].offer(buffer);
+    }
+
+    //Helper methods
+    private static int sizeClass(int size) {
+        if (size > 1 << MAX_SHIFT)
+            return -1;
+        if (size <= 1 << MIN_SHIFT)
+            return 0;
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+    }
+
+    private static int exactSizeClass(int size) {
+        if (Integer.bitCount(size) != 1 || size < 1 << MIN_SHIFT || size > 1 << MAX_SHIFT)
+            return -1;
+        return Integer.numberOfTrailingZeros(size) - MIN_SHIFT;
+    }
+}
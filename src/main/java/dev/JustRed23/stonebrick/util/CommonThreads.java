@@ -1,10 +1,16 @@
 package dev.JustRed23.stonebrick.util;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 
 public final class CommonThreads {
 
+    private static final List<Runnable> shutdownHooks = new CopyOnWriteArrayList<>();
+
     public static ExecutorService networkThread = Executors.newFixedThreadPool(10, r -> {
         Thread t = new Thread(r);
         t.setName("Network Thread");
@@ -19,8 +25,31 @@ public final class CommonThreads {
         return t;
     });
 
+    public static ScheduledExecutorService scheduledThread = scheduled();
+
+    //Cancelled tasks, like the deadline of a request that already completed, are removed at once instead of staying queued until they are due
+    private static ScheduledExecutorService scheduled() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r);
+            t.setName("Scheduled Thread");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * Runs the hook every time {@link #shutdown()} is called, for threads that are owned by other parts of the library
+     */
+    public static void onShutdown(Runnable hook) {
+        shutdownHooks.add(hook);
+    }
+
     public static void shutdown() {
         networkThread.shutdown();
         appThread.shutdown();
+        scheduledThread.shutdown();
+        shutdownHooks.forEach(Runnable::run);
     }
 }
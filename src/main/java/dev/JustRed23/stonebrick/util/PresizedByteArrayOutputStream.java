@@ -0,0 +1,30 @@
+package dev.JustRed23.stonebrick.util;
+
+import org.jetbrains.annotations.Range;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * A {@link ByteArrayOutputStream} for data with a known size.
+ * When exactly the expected amount of bytes is written, {@link #toByteArray()} returns the internal buffer instead of a copy.
+ * Do not write to the stream after calling {@link #toByteArray()}.
+ */
+public class PresizedByteArrayOutputStream extends ByteArrayOutputStream {
+
+    /**
+     * Expected sizes above this are not allocated up front, to protect against bogus lengths
+     */
+    private static final int MAX_PRESIZE = 64 * 1024 * 1024;
+
+    /**
+     * @param expectedSize The amount of bytes that will be written, 0 if it is unknown
+     */
+    public PresizedByteArrayOutputStream(@Range(from = 0, to = Integer.MAX_VALUE) int expectedSize) {
+        //Small sizes are allocated exactly too, otherwise they never fill the buffer
+        super(expectedSize > 0 ? Math.min(expectedSize, MAX_PRESIZE) : 32);
+    }
+
+    public synchronized byte[] toByteArray() {
+        return count == buf.length ? buf : super.toByteArray();
+    }
+}
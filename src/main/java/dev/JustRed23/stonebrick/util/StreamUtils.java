@@ -23,14 +23,15 @@ public final class StreamUtils {
         if (is == null)
             return null;
 
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            byte[] buffer = new byte[NetworkConfig.BUFFER_SIZE];
+        byte[] buffer = BufferPool.acquire(Math.max(NetworkConfig.BUFFER_SIZE, 1));
+        try (ByteArrayOutputStream baos = new PresizedByteArrayOutputStream(is.available())) {
             int read;
             while ((read = is.read(buffer)) != -1)
                 baos.write(buffer, 0, read);
             baos.flush();
             return baos.toByteArray();
         } finally {
+            BufferPool.release(buffer);
             closeQuietly(is);
         }
     }
@@ -1,11 +1,13 @@
 package dev.JustRed23.stonebrick.validation;
 
+import dev.JustRed23.stonebrick.util.BufferPool;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Objects;
@@ -13,27 +15,37 @@ import java.util.Objects;
 public enum Checksum {
     MD5("MD5"), SHA1("SHA-1"), SHA256("SHA-256");
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     final String algorithm;
     Checksum(String algorithm) {
         this.algorithm = algorithm;
     }
 
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
     @NotNull
     public String checksum(File file) {
-        try (InputStream inputStream = new FileInputStream(file)) {
+        ByteBuffer buffer = BufferPool.acquireDirect(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
             MessageDigest digest = MessageDigest.getInstance(algorithm);
-            byte[] buffer = new byte[1024];
-            int total;
-            while ((total = inputStream.read(buffer)) != -1) {
-                digest.update(buffer, 0, total);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
             }
-            StringBuilder result = new StringBuilder();
-            for (byte b : digest.digest()) {
-                result.append(String.format("%02x", b));
+
+            byte[] hash = digest.digest();
+            char[] result = new char[hash.length * 2];
+            for (int i = 0; i < hash.length; i++) {
+                result[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+                result[i * 2 + 1] = HEX[hash[i] & 0xF];
             }
-            return result.toString();
+            return new String(result);
         } catch (IOException | NoSuchAlgorithmException e) {
             throw new RuntimeException(e);
+        } finally {
+            BufferPool.releaseDirect(buffer);
         }
     }
 
@@ -0,0 +1,167 @@
+import dev.JustRed23.abcm.Config;
+import dev.JustRed23.abcm.exception.ConfigInitException;
+import dev.JustRed23.stonebrick.exceptions.NetResponseException;
+import dev.JustRed23.stonebrick.net.BatchLoader;
+import dev.JustRed23.stonebrick.net.NetworkManager;
+import dev.JustRed23.stonebrick.net.Response;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchLoaderTest {
+
+    private static LocalHttpServer server;
+
+    @BeforeAll
+    static void start() throws ConfigInitException, IOException {
+        Config.init();
+        server = new LocalHttpServer().payloadSize(64);
+    }
+
+    @AfterAll
+    static void stop() {
+        server.close();
+    }
+
+    @Test
+    void testCoalescing() throws Exception {
+        List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+        BatchLoader<Integer, String> loader = loader("/coalesce", batches).window(10_000).maxBatchSize(100);
+
+        CompletableFuture<String> first = loader.load(1);
+        CompletableFuture<String> second = loader.load(2);
+        //The same key within one batch shares the future and is only requested once
+        assertSame(first, loader.load(1));
+        CompletableFuture<Map<Integer, String>> all = loader.loadAll(List.of(2, 3));
+        assertTrue(batches.isEmpty());
+
+        loader.flush();
+        assertEquals("value 1", first.get(5, TimeUnit.SECONDS));
+        assertEquals("value 2", second.get(5, TimeUnit.SECONDS));
+        assertEquals(Map.of(2, "value 2", 3, "value 3"), all.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of(List.of(1, 2, 3)), batches);
+    }
+
+    @Test
+    void testFullBatch() throws Exception {
+        List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+        BatchLoader<Integer, String> loader = loader("/full", batches).window(10_000).maxBatchSize(2);
+
+        //A full batch is sent without waiting for the window
+        CompletableFuture<Map<Integer, String>> full = loader.loadAll(List.of(1, 2));
+        assertEquals(Map.of(1, "value 1", 2, "value 2"), full.get(5, TimeUnit.SECONDS));
+
+        CompletableFuture<String> next = loader.load(3);
+        assertThrows(TimeoutException.class, () -> next.get(100, TimeUnit.MILLISECONDS));
+        loader.flush();
+        assertEquals("value 3", next.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of(List.of(1, 2), List.of(3)), batches);
+    }
+
+    @Test
+    void testFlushTimer() throws Exception {
+        List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+        BatchLoader<Integer, String> loader = loader("/timer", batches).window(50);
+
+        //Sent once the window passed, without a flush
+        CompletableFuture<Map<Integer, String>> values = loader.loadAll(List.of(1, 2));
+        assertEquals(Map.of(1, "value 1", 2, "value 2"), values.get(5, TimeUnit.SECONDS));
+        assertEquals(1, batches.size());
+
+        //The next key starts a new window
+        assertEquals("value 3", loader.load(3).get(5, TimeUnit.SECONDS));
+        assertEquals(List.of(List.of(1, 2), List.of(3)), batches);
+    }
+
+    @Test
+    void testMissingValue() throws Exception {
+        BatchLoader<Integer, String> loader = new BatchLoader<Integer, String>(
+                keys -> NetworkManager.get(server.url("/missing?ids=" + join(keys))),
+                (keys, response) -> Map.of(1, "one")
+        ).window(10_000);
+
+        CompletableFuture<String> one = loader.load(1), two = loader.load(2);
+        loader.flush();
+        assertEquals("one", one.get(5, TimeUnit.SECONDS));
+        assertNull(two.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testFailure() throws InterruptedException {
+        BatchLoader<Integer, String> loader = new BatchLoader<Integer, String>(
+                keys -> NetworkManager.get(server.url("/status/500?ids=" + join(keys))),
+                (keys, response) -> fail("Split a failed response")
+        ).window(10_000);
+
+        CompletableFuture<String> one = loader.load(1), two = loader.load(2);
+        loader.flush();
+        for (CompletableFuture<String> future : List.of(one, two)) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof NetResponseException, String.valueOf(e.getCause()));
+        }
+    }
+
+    @Test
+    void testSpilledResponseClosed() throws Exception {
+        AtomicReference<Response> split = new AtomicReference<>();
+        BatchLoader<Integer, Integer> loader = new BatchLoader<Integer, Integer>(
+                keys -> NetworkManager.get(server.url("/spill?ids=" + join(keys))).spillThreshold(16),
+                (keys, response) -> {
+                    split.set(response);
+                    return Map.of(keys.get(0), response.asString().length());
+                }
+        ).window(10_000);
+
+        CompletableFuture<Integer> length = loader.load(1);
+        loader.flush();
+        assertEquals(64, (int) length.get(5, TimeUnit.SECONDS));
+        assertTrue(split.get().isSpilled());
+
+        //Closed right after the split, which deletes the temporary file
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (readable(split.get()) && System.nanoTime() < end)
+            TimeUnit.MILLISECONDS.sleep(10);
+        assertFalse(readable(split.get()));
+    }
+
+    private static BatchLoader<Integer, String> loader(String path, List<List<Integer>> batches) {
+        return new BatchLoader<>(keys -> {
+            batches.add(List.copyOf(keys));
+            return NetworkManager.get(server.url(path + "?ids=" + join(keys)));
+        }, (keys, response) -> {
+            response.throwIfNotSuccess();
+            Map<Integer, String> values = new HashMap<>();
+            for (Integer key : keys)
+                values.put(key, "value " + key);
+            return values;
+        });
+    }
+
+    private static String join(List<Integer> keys) {
+        return keys.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    private static boolean readable(Response response) {
+        try {
+            response.asStream().close();
+            return true;
+        } catch (IOException | UncheckedIOException e) {
+            return false;
+        }
+    }
+}
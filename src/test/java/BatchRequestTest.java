@@ -0,0 +1,111 @@
+import dev.JustRed23.abcm.Config;
+import dev.JustRed23.abcm.exception.ConfigInitException;
+import dev.JustRed23.stonebrick.net.BatchEntry;
+import dev.JustRed23.stonebrick.net.BatchResult;
+import dev.JustRed23.stonebrick.net.NetworkManager;
+import dev.JustRed23.stonebrick.net.RequestBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchRequestTest {
+
+    @BeforeAll
+    static void init() throws ConfigInitException {
+        Config.init();
+    }
+
+    @Test
+    void testPartialFailure() throws IOException, InterruptedException {
+        try (LocalHttpServer server = new LocalHttpServer()) {
+            List<RequestBuilder> requests = List.of(
+                    NetworkManager.get(server.url("/ok/1")),
+                    NetworkManager.get(server.url("/status/404")),
+                    NetworkManager.get(server.url("/status/500")),
+                    NetworkManager.get(closedPort() + "/unreachable"),
+                    NetworkManager.get(server.url("/ok/2"))
+            );
+
+            Thread caller = Thread.currentThread();
+            List<BatchEntry> delivered = new ArrayList<>();
+            BatchResult result = NetworkManager.batch(requests).parallelism(3).execute(entry -> {
+                assertSame(caller, Thread.currentThread());
+                delivered.add(entry);
+            });
+
+            //A failing request does not stop the others
+            assertEquals(5, result.total());
+            assertEquals(5, result.completed());
+            assertEquals(2, result.succeeded());
+            assertEquals(3, result.failed());
+            assertEquals(5, delivered.size());
+
+            Set<Integer> failed = new HashSet<>();
+            for (BatchEntry failure : result.failures())
+                failed.add(failure.index());
+            assertEquals(Set.of(1, 2, 3), failed);
+
+            for (BatchEntry entry : delivered) {
+                switch (entry.index()) {
+                    case 1, 2 -> {
+                        assertNull(entry.exception());
+                        assertEquals(entry.index() == 1 ? 404 : 500, entry.response().responseCode());
+                    }
+                    case 3 -> {
+                        assertNotNull(entry.exception());
+                        assertNull(entry.response());
+                    }
+                    default -> assertTrue(entry.isSuccess());
+                }
+            }
+        }
+    }
+
+    @Test
+    void testResultOrder() throws IOException, InterruptedException {
+        try (LocalHttpServer server = new LocalHttpServer()) {
+            List<RequestBuilder> requests = new ArrayList<>();
+            for (int i = 0; i < 20; i++)
+                requests.add(NetworkManager.get(server.url("/order/" + i)));
+
+            //With one request in flight they complete in the order they were added
+            List<Integer> order = new ArrayList<>();
+            BatchResult sequential = NetworkManager.batch(requests).parallelism(1).execute(entry -> order.add(entry.index()));
+            assertEquals(20, sequential.succeeded());
+            for (int i = 0; i < 20; i++)
+                assertEquals(i, (int) order.get(i));
+
+            //In parallel the order can differ, but every entry still belongs to its own request
+            Set<Integer> seen = new HashSet<>();
+            NetworkManager.batch(requests).parallelism(8).execute(entry -> {
+                assertSame(requests.get(entry.index()), entry.request());
+                assertTrue(seen.add(entry.index()));
+            });
+            assertEquals(20, seen.size());
+        }
+    }
+
+    @Test
+    void testEmptyBatch() throws InterruptedException {
+        BatchResult result = NetworkManager.batch(List.of()).execute();
+        assertEquals(0, result.total());
+        assertEquals(0, result.completed());
+        assertEquals(0, result.minNanos());
+        assertEquals(0, result.averageNanos());
+    }
+
+    //A local address nothing listens on
+    private static String closedPort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return "http://127.0.0.1:" + socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+import dev.JustRed23.stonebrick.util.BufferPool;
+import dev.JustRed23.stonebrick.util.PresizedByteArrayOutputStream;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//The pool is shared, so the tests use a size class per test to not see each other's buffers
+class BufferPoolTest {
+
+    @Test
+    void testSizeClasses() {
+        assertEquals(512, BufferPool.acquire(1).length);
+        assertEquals(512, BufferPool.acquire(512).length);
+        assertEquals(1024, BufferPool.acquire(513).length);
+        assertEquals(1 << 20, BufferPool.acquire(1 << 20).length);
+        //Above the biggest size class the exact size is allocated
+        assertEquals((1 << 20) + 1, BufferPool.acquire((1 << 20) + 1).length);
+    }
+
+    @Test
+    void testReleasedBufferIsReused() {
+        byte[] buffer = BufferPool.acquire(3000);
+        assertEquals(4096, buffer.length);
+        BufferPool.release(buffer);
+        assertSame(buffer, BufferPool.acquire(2049));
+    }
+
+    @Test
+    void testForeignBuffersAreNotPooled() {
+        //Not a size class
+        byte[] odd = new byte[6000];
+        BufferPool.release(odd);
+        assertNotSame(odd, BufferPool.acquire(6000));
+
+        //Too large
+        byte[] large = BufferPool.acquire(2 << 20);
+        BufferPool.release(large);
+        assertNotSame(large, BufferPool.acquire(2 << 20));
+    }
+
+    @Test
+    void testPoolIsBounded() {
+        List<byte[]> released = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+            released.add(new byte[16384]);
+        released.forEach(BufferPool::release);
+
+        Set<byte[]> reused = Collections.newSetFromMap(new IdentityHashMap<>());
+        reused.addAll(released);
+        int hits = 0;
+        for (int i = 0; i < 100; i++) {
+            if (reused.contains(BufferPool.acquire(16384)))
+                hits++;
+        }
+        assertEquals(64, hits);
+    }
+
+    @Test
+    void testDirectBuffers() {
+        ByteBuffer buffer = BufferPool.acquireDirect(8000);
+        assertTrue(buffer.isDirect());
+        assertEquals(8192, buffer.capacity());
+
+        buffer.putInt(42).flip();
+        BufferPool.releaseDirect(buffer);
+
+        //Handed out again cleared
+        ByteBuffer again = BufferPool.acquireDirect(8192);
+        assertSame(buffer, again);
+        assertEquals(0, again.position());
+        assertEquals(8192, again.limit());
+
+        //Heap buffers are never added to the direct pool
+        ByteBuffer heap = ByteBuffer.allocate(8192);
+        BufferPool.releaseDirect(heap);
+        assertNotSame(heap, BufferPool.acquireDirect(8192));
+    }
+
+    @Test
+    void testPresizedStream() {
+        Presized exact = new Presized(5);
+        assertEquals(5, exact.capacity());
+        exact.write(new byte[]{1, 2, 3, 4, 5}, 0, 5);
+        //The full internal buffer is returned without a copy
+        assertSame(exact.toByteArray(), exact.toByteArray());
+
+        Presized shorter = new Presized(5);
+        shorter.write(new byte[]{1, 2}, 0, 2);
+        assertArrayEquals(new byte[]{1, 2}, shorter.toByteArray());
+
+        Presized longer = new Presized(2);
+        longer.write(new byte[]{1, 2, 3, 4}, 0, 4);
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, longer.toByteArray());
+    }
+
+    @Test
+    void testPresizeIsCapped() {
+        //A bogus content length does not allocate up front
+        Presized stream = new Presized(Integer.MAX_VALUE);
+        assertEquals(64 * 1024 * 1024, stream.capacity());
+        stream.write(7);
+        assertArrayEquals(new byte[]{7}, stream.toByteArray());
+
+        assertEquals(32, new Presized(0).capacity());
+    }
+
+    private static class Presized extends PresizedByteArrayOutputStream {
+
+        Presized(int expectedSize) {
+            super(expectedSize);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
+}
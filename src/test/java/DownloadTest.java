@@ -0,0 +1,146 @@
+import dev.JustRed23.abcm.Config;
+import dev.JustRed23.abcm.exception.ConfigInitException;
+import dev.JustRed23.stonebrick.exceptions.NetRequestException;
+import dev.JustRed23.stonebrick.net.Callback;
+import dev.JustRed23.stonebrick.net.HostMetrics;
+import dev.JustRed23.stonebrick.net.NetworkManager;
+import dev.JustRed23.stonebrick.net.NetworkMetrics;
+import dev.JustRed23.stonebrick.net.Request;
+import dev.JustRed23.stonebrick.net.Response;
+import dev.JustRed23.stonebrick.net.SegmentedDownload;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DownloadTest {
+
+    private static LocalHttpServer server;
+    private static byte[] content;
+
+    @BeforeAll
+    static void start() throws ConfigInitException, IOException {
+        Config.init();
+        content = new byte[1024 * 1024 + 17];
+        new Random(23).nextBytes(content);
+        server = new LocalHttpServer().file(content);
+    }
+
+    @AfterAll
+    static void stop() {
+        server.close();
+    }
+
+    @Test
+    void testSegmentedDownload() throws NetRequestException, IOException {
+        File destination = File.createTempFile("stonebrick", ".bin");
+        AtomicInteger percent = new AtomicInteger(-1);
+        AtomicBoolean backwards = new AtomicBoolean();
+        AtomicReference<File> downloaded = new AtomicReference<>();
+
+        NetworkManager.get(server.url("/file")).download(destination).segments(4).callback(new Callback() {
+            public void response(Request request, Response response, NetRequestException e) {
+                fail("Download failed", e);
+            }
+
+            public void progress(Request request, int current, int total, int p) {
+                if (percent.getAndSet(p) >= p)
+                    backwards.set(true);
+            }
+
+            public void downloaded(Request request, File file) {
+                downloaded.set(file);
+            }
+        }).execute();
+
+        assertArrayEquals(content, Files.readAllBytes(destination.toPath()));
+        assertEquals(100, percent.get());
+        assertFalse(backwards.get());
+        assertEquals(destination, downloaded.get());
+        assertFalse(new File(destination.getPath() + ".download").exists());
+        destination.delete();
+    }
+
+    @Test
+    void testResume() throws NetRequestException, IOException {
+        File destination = File.createTempFile("stonebrick", ".bin");
+
+        server.failFileAfter(1000);
+        assertThrows(NetRequestException.class, () -> NetworkManager.get(server.url("/file")).download(destination).segments(4).execute());
+        assertTrue(new File(destination.getPath() + ".download").exists());
+
+        server.failFileAfter(-1);
+        long served = server.fileBytes();
+        NetworkManager.get(server.url("/file")).download(destination).segments(4).execute();
+        assertArrayEquals(content, Files.readAllBytes(destination.toPath()));
+
+        //The first segment completed before the failure and is not fetched again, only the range probe and the other segments are
+        long resumed = server.fileBytes() - served;
+        assertTrue(resumed <= 1 + content.length - content.length / 4, "resumed " + resumed + " bytes");
+        destination.delete();
+    }
+
+    @Test
+    void testResumeSameInstance() throws NetRequestException, IOException {
+        File destination = File.createTempFile("stonebrick", ".bin");
+        SegmentedDownload download = NetworkManager.get(server.url("/file")).download(destination).segments(4);
+
+        server.failFileAfter(1000);
+        assertThrows(NetRequestException.class, download::execute);
+
+        server.failFileAfter(-1);
+        download.execute();
+        assertArrayEquals(content, Files.readAllBytes(destination.toPath()));
+        assertFalse(new File(destination.getPath() + ".download").exists());
+        destination.delete();
+    }
+
+    @Test
+    void testSegmentsAreMetered() throws NetRequestException, IOException {
+        try (LocalHttpServer server = new LocalHttpServer().file(content)) {
+            File destination = File.createTempFile("stonebrick", ".bin");
+            NetworkManager.get(server.url("/file")).download(destination).segments(4).execute();
+
+            //The range probe and every segment are recorded like any other request
+            HostMetrics.Snapshot snapshot = NetworkMetrics.snapshot(server.url("").substring("http://".length()));
+            assertNotNull(snapshot);
+            assertEquals(Map.of(206, 5L), snapshot.statusCodes());
+            assertTrue(snapshot.bytesIn() >= content.length);
+            destination.delete();
+        }
+    }
+
+    @Test
+    void testSingleConnectionFallback() throws NetRequestException, IOException {
+        //The root path ignores ranges, so the file is downloaded over one connection
+        try (LocalHttpServer server = new LocalHttpServer().payloadSize(200_000)) {
+            File destination = File.createTempFile("stonebrick", ".bin");
+            AtomicInteger percent = new AtomicInteger(-1);
+
+            NetworkManager.get(server.url("/plain")).download(destination).callback(new Callback() {
+                public void response(Request request, Response response, NetRequestException e) {
+                    fail("Download failed", e);
+                }
+
+                public void progress(Request request, int current, int total, int p) {
+                    assertEquals(200_000, total);
+                    percent.set(p);
+                }
+            }).execute();
+
+            assertEquals(200_000, destination.length());
+            assertEquals(100, percent.get());
+            destination.delete();
+        }
+    }
+}
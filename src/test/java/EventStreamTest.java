@@ -0,0 +1,198 @@
+import dev.JustRed23.abcm.Config;
+import dev.JustRed23.abcm.exception.ConfigInitException;
+import dev.JustRed23.stonebrick.net.Event;
+import dev.JustRed23.stonebrick.net.EventHandler;
+import dev.JustRed23.stonebrick.net.EventStream;
+import dev.JustRed23.stonebrick.net.NetworkManager;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventStreamTest {
+
+    private static LocalHttpServer server;
+
+    @BeforeAll
+    static void start() throws ConfigInitException, IOException {
+        Config.init();
+        server = new LocalHttpServer();
+    }
+
+    @AfterAll
+    static void stop() {
+        server.close();
+    }
+
+    @Test
+    void testParsing() throws InterruptedException {
+        server.events(0, new String[]{
+                ": comment\n",
+                "retry: 10\n",
+                "event: update\nid: 1\ndata: first\ndata: second\n\n",
+                "data:no space\n\n",
+                "data: incomplete\n"
+        });
+        Recorder recorder = new Recorder();
+        EventStream stream = NetworkManager.get(server.url("/events")).events(recorder).start();
+
+        //The connection ends after the events, the reconnect receives 204 and stops the stream
+        assertTrue(recorder.closed.await(5, TimeUnit.SECONDS));
+        assertFalse(stream.isOpen());
+        assertEquals(2, recorder.events.size());
+
+        Event first = recorder.events.get(0);
+        assertEquals("update", first.type());
+        assertEquals("1", first.id());
+        assertEquals("first\nsecond", first.data());
+
+        Event second = recorder.events.get(1);
+        assertEquals("message", second.type());
+        assertEquals("1", second.id());
+        assertEquals("no space", second.data());
+        assertTrue(recorder.errors.isEmpty(), String.valueOf(recorder.errors));
+    }
+
+    @Test
+    void testReconnectWithLastEventId() throws InterruptedException {
+        server.events(0,
+                new String[]{"id: 1\ndata: a\n\n"},
+                new String[]{"id: 2\ndata: b\n\n"}
+        );
+        Recorder recorder = new Recorder();
+        NetworkManager.get(server.url("/events")).events(recorder).reconnectDelay(10).start();
+
+        assertTrue(recorder.closed.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("a", "b"), recorder.events.stream().map(Event::data).toList());
+        assertEquals(List.of("null", "1", "2"), server.lastEventIds());
+    }
+
+    @Test
+    void testQuietStreamIgnoresRequestTimeouts() throws InterruptedException {
+        server.events(600, new String[]{"data: a\n\n", "data: b\n\n"});
+        Recorder recorder = new Recorder();
+        NetworkManager.get(server.url("/events")).readTimeout(200).deadline(300).events(recorder).reconnectDelay(10).start();
+
+        assertTrue(recorder.closed.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("a", "b"), recorder.events.stream().map(Event::data).toList());
+        assertTrue(recorder.errors.isEmpty(), String.valueOf(recorder.errors));
+        //One connection for the events and one that received 204
+        assertEquals(2, server.lastEventIds().size());
+    }
+
+    @Test
+    void testIdleTimeout() throws InterruptedException {
+        server.events(600, new String[]{"data: a\n\n", "data: b\n\n"});
+        Recorder recorder = new Recorder();
+        NetworkManager.get(server.url("/events")).events(recorder).idleTimeout(200).reconnectDelay(10).start();
+
+        //The pause before the second event is longer than the idle timeout, so the stream reconnects and receives 204
+        assertTrue(recorder.closed.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("a"), recorder.events.stream().map(Event::data).toList());
+        assertEquals(1, recorder.errors.size());
+    }
+
+    @Test
+    void testErrorsAreQueuedWithEvents() throws InterruptedException {
+        server.events(600, new String[]{"data: a\n\n", "data: b\n\n"});
+        List<String> calls = new CopyOnWriteArrayList<>();
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        CountDownLatch closed = new CountDownLatch(1);
+
+        //The idle timeout fails the connection while the first event is still being handled
+        NetworkManager.get(server.url("/events")).events(new EventHandler() {
+            public void onEvent(Event event) throws InterruptedException {
+                threads.add(Thread.currentThread());
+                TimeUnit.MILLISECONDS.sleep(400);
+                calls.add("event " + event.data());
+            }
+
+            public void onError(Exception e) {
+                threads.add(Thread.currentThread());
+                calls.add("error");
+            }
+
+            public void onClosed() {
+                threads.add(Thread.currentThread());
+                closed.countDown();
+            }
+        }).idleTimeout(200).reconnectDelay(10).start();
+
+        assertTrue(closed.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("event a", "error"), calls);
+        assertEquals(1, threads.size());
+    }
+
+    @Test
+    void testCloseUnblocksReader() throws InterruptedException {
+        String[] events = new String[50];
+        Arrays.fill(events, "data: x\n\n");
+        server.events(0, events);
+
+        CountDownLatch handling = new CountDownLatch(1), release = new CountDownLatch(1), closed = new CountDownLatch(1);
+        AtomicInteger handled = new AtomicInteger();
+        String url = server.url("/events");
+        EventStream stream = NetworkManager.get(url).events(new EventHandler() {
+            public void onEvent(Event event) throws InterruptedException {
+                handled.incrementAndGet();
+                handling.countDown();
+                release.await();
+            }
+
+            public void onClosed() {
+                closed.countDown();
+            }
+        }).bufferSize(1).start();
+
+        //The handler is stuck on the first event and the buffer is full, the reader waits for room
+        assertTrue(handling.await(5, TimeUnit.SECONDS));
+        Thread reader = reader(url);
+        assertNotNull(reader);
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (reader.getState() != Thread.State.WAITING && System.nanoTime() < end)
+            TimeUnit.MILLISECONDS.sleep(10);
+
+        stream.close();
+        reader.join(5000);
+        assertFalse(reader.isAlive(), "The reader still waits for the busy handler");
+
+        //Only what was already queued is handled
+        release.countDown();
+        assertTrue(closed.await(5, TimeUnit.SECONDS));
+        assertTrue(handled.get() <= 2, "handled " + handled.get());
+    }
+
+    private static Thread reader(String url) {
+        return Thread.getAllStackTraces().keySet().stream().filter(t -> t.getName().equals("Event Reader " + url)).findFirst().orElse(null);
+    }
+
+    private static final class Recorder implements EventHandler {
+
+        final List<Event> events = new CopyOnWriteArrayList<>();
+        final List<Exception> errors = new CopyOnWriteArrayList<>();
+        final CountDownLatch closed = new CountDownLatch(1);
+
+        public void onEvent(Event event) {
+            events.add(event);
+        }
+
+        public void onError(Exception e) {
+            errors.add(e);
+        }
+
+        public void onClosed() {
+            closed.countDown();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+import dev.JustRed23.abcm.Config;
+import dev.JustRed23.abcm.exception.ConfigInitException;
+import dev.JustRed23.stonebrick.exceptions.NetRequestException;
+import dev.JustRed23.stonebrick.net.HostLimiter;
+import dev.JustRed23.stonebrick.net.LimitPolicy;
+import dev.JustRed23.stonebrick.net.NetworkManager;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//Every test uses its own server, limits are shared by every request to the same host and port
+class HostLimiterTest {
+
+    @BeforeAll
+    static void init() throws ConfigInitException {
+        Config.init();
+    }
+
+    @Test
+    void testRateLimit() throws IOException, NetRequestException {
+        try (LocalHttpServer server = new LocalHttpServer()) {
+            long start = System.nanoTime();
+            //A burst of 10, the other 5 are spaced 100 ms apart
+            for (int i = 0; i < 15; i++)
+                assertTrue(NetworkManager.get(server.url("/rate")).rateLimit(10).blocking().isSuccess());
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertTrue(elapsed >= 400, "took " + elapsed);
+            assertTrue(elapsed < 2000, "took " + elapsed);
+            assertEquals(15, limiter(server).acquired());
+        }
+    }
+
+    @Test
+    void testQueue() throws IOException, InterruptedException {
+        try (LocalHttpServer server = new LocalHttpServer().latency(200)) {
+            AtomicInteger successes = new AtomicInteger();
+            long start = System.nanoTime();
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                final int id = i;
+                Thread thread = new Thread(() -> {
+                    try {
+                        if (NetworkManager.get(server.url("/queue/" + id)).maxConcurrent(2).limitPolicy(LimitPolicy.QUEUE).blocking().isSuccess())
+                            successes.incrementAndGet();
+                    } catch (NetRequestException ignored) {}
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            for (Thread thread : threads)
+                thread.join();
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            //3 rounds of 2 requests
+            assertEquals(6, successes.get());
+            assertTrue(elapsed >= 550, "took " + elapsed);
+            assertEquals(0, limiter(server).rejected());
+        }
+    }
+
+    @Test
+    void testFailFast() throws IOException, InterruptedException {
+        try (LocalHttpServer server = new LocalHttpServer().latency(500)) {
+            Thread slow = new Thread(() -> {
+                try {
+                    NetworkManager.get(server.url("/slow")).maxConcurrent(1).blocking();
+                } catch (NetRequestException ignored) {}
+            });
+            slow.start();
+            TimeUnit.MILLISECONDS.sleep(100);
+
+            NetRequestException e = assertThrows(NetRequestException.class,
+                    () -> NetworkManager.get(server.url("/fast")).maxConcurrent(1).limitPolicy(LimitPolicy.FAIL_FAST).blocking());
+            assertTrue(e.getCause() instanceof RejectedExecutionException, String.valueOf(e.getCause()));
+            assertEquals(1, limiter(server).rejected());
+            slow.join();
+        }
+    }
+
+    @Test
+    void testInterruptWhileQueued() throws IOException, InterruptedException {
+        try (LocalHttpServer server = new LocalHttpServer().latency(500)) {
+            Thread slow = new Thread(() -> {
+                try {
+                    NetworkManager.get(server.url("/slow")).maxConcurrent(1).blocking();
+                } catch (NetRequestException ignored) {}
+            });
+            slow.start();
+            TimeUnit.MILLISECONDS.sleep(100);
+
+            AtomicBoolean interrupted = new AtomicBoolean();
+            Thread queued = new Thread(() -> {
+                try {
+                    NetworkManager.get(server.url("/queued")).maxConcurrent(1).blocking();
+                } catch (NetRequestException ignored) {}
+                interrupted.set(Thread.currentThread().isInterrupted());
+            });
+            queued.start();
+            TimeUnit.MILLISECONDS.sleep(100);
+            queued.interrupt();
+            queued.join();
+
+            //An interrupt that did not come from cancel or a deadline is kept for the caller
+            assertTrue(interrupted.get());
+            slow.join();
+        }
+    }
+
+    @Test
+    void testStrictestLimitApplies() throws IOException, NetRequestException {
+        try (LocalHttpServer server = new LocalHttpServer()) {
+            NetworkManager.get(server.url("/a")).maxConcurrent(4).rateLimit(100).blocking();
+            NetworkManager.get(server.url("/b")).maxConcurrent(1).blocking();
+            NetworkManager.get(server.url("/c")).maxConcurrent(8).rateLimit(50).blocking();
+            //Requests without limits of their own are still counted against the host
+            NetworkManager.get(server.url("/d")).blocking();
+
+            HostLimiter limiter = limiter(server);
+            assertEquals(1, limiter.maxConcurrent());
+            assertEquals(50, limiter.rateLimit());
+            assertEquals(4, limiter.acquired());
+        }
+    }
+
+    private static HostLimiter limiter(LocalHttpServer server) {
+        String host = server.url("").substring("http://".length());
+        List<HostLimiter> limiters = NetworkManager.hostLimiters().stream().filter(limiter -> limiter.host().equals(host)).toList();
+        assertEquals(1, limiters.size());
+        return limiters.get(0);
+    }
+}
@@ -0,0 +1,130 @@
+import dev.JustRed23.stonebrick.net.JSONStreamReader;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JSONStreamTest {
+
+    @Test
+    void testArrayElements() throws IOException {
+        JSONStreamReader reader = new JSONStreamReader(new StringReader("[{\"id\":1,\"tags\":[\"a\",\"b\"]},{\"id\":2,\"name\":\"two\\n\"}]"));
+        List<Object> elements = new ArrayList<>();
+        reader.forEachElement(elements::add);
+
+        assertEquals(2, elements.size());
+        assertEquals(1, ((JSONObject) elements.get(0)).getInt("id"));
+        assertEquals("two\n", ((JSONObject) elements.get(1)).getString("name"));
+        assertEquals(JSONStreamReader.Token.END_DOCUMENT, reader.peek());
+    }
+
+    @Test
+    void testSelect() throws IOException {
+        JSONStreamReader reader = new JSONStreamReader(new StringReader("{\"skip\":{\"nested\":[1,2,3]},\"count\":12345678901,\"ok\":true}"));
+        Map<String, Object> fields = reader.select("count", "ok");
+
+        assertEquals(12345678901L, fields.get("count"));
+        assertEquals(true, fields.get("ok"));
+    }
+
+    @Test
+    void testStringEscapes() throws IOException {
+        JSONStreamReader reader = new JSONStreamReader(new StringReader(
+                "[\"\\\" \\\\ \\/ \\b \\f \\n \\r \\t\", \"\\u0041\\u00e9\\u20AC\", \"\\ud83d\\ude00\", \"\\ud83d\"]"));
+        reader.beginArray();
+        assertEquals("\" \\ / \b \f \n \r \t", reader.nextString());
+        assertEquals("A\u00e9\u20ac", reader.nextString());
+        //A surrogate pair is decoded as two chars that form one code point
+        String emoji = reader.nextString();
+        assertEquals("\ud83d\ude00", emoji);
+        assertEquals(0x1F600, emoji.codePointAt(0));
+        //A lone surrogate is kept as is, like org.json does
+        assertEquals("\ud83d", reader.nextString());
+        reader.endArray();
+    }
+
+    @Test
+    void testNumbersMatchOrgJson() throws IOException {
+        String[] numbers = {"0", "-0", "1", "-1", "2147483647", "2147483648", "-2147483648", "-2147483649",
+                "9223372036854775807", "9223372036854775808", "-9223372036854775808", "123456789012345678901234567890",
+                "0.5", "-0.0", "1.10", "1e3", "1E-3", "-2.5e+10", "12345678901234567890.123456789"};
+        JSONStreamReader reader = new JSONStreamReader(new StringReader("[" + String.join(",", numbers) + "]"));
+
+        reader.beginArray();
+        for (String number : numbers) {
+            Object expected = JSONObject.stringToValue(number);
+            Number actual = reader.nextNumber();
+            assertEquals(expected, actual, number);
+            assertEquals(expected.getClass(), actual.getClass(), number);
+        }
+        reader.endArray();
+    }
+
+    @Test
+    void testSkipValue() throws IOException {
+        JSONStreamReader reader = new JSONStreamReader(new StringReader(
+                "{\"a\":{},\"b\":[],\"c\":[[],{},[{\"d\":[1,{\"e\":null}]}]],\"f\":\"]}\",\"g\":true,\"h\":42}"));
+        Map<String, Object> fields = reader.select("g", "h");
+        assertEquals(true, fields.get("g"));
+        assertEquals(42, fields.get("h"));
+
+        reader = new JSONStreamReader(new StringReader("[{}, [], [[]], {\"x\":{}}, 7]"));
+        reader.beginArray();
+        for (int i = 0; i < 4; i++)
+            reader.skipValue();
+        assertEquals(7, reader.nextInt());
+        reader.endArray();
+        assertEquals(JSONStreamReader.Token.END_DOCUMENT, reader.peek());
+    }
+
+    @Test
+    void testNestedValue() throws IOException {
+        JSONStreamReader reader = new JSONStreamReader(new StringReader(" { \"list\" : [ 1 , { } , [ ] , null ] , \"empty\" : \"\" } "));
+        JSONObject object = (JSONObject) reader.nextValue();
+        JSONArray list = object.getJSONArray("list");
+
+        assertEquals(4, list.length());
+        assertEquals(0, ((JSONObject) list.get(1)).length());
+        assertEquals(0, ((JSONArray) list.get(2)).length());
+        assertSame(JSONObject.NULL, list.get(3));
+        assertEquals("", object.getString("empty"));
+    }
+
+    @Test
+    void testMalformed() {
+        String[] documents = {
+                "[1,2", "[1 2]", "[1,]", "{\"a\" 1}", "{\"a\":1,}", "{a:1}", "{\"a\":1 \"b\":2}",
+                "\"unterminated", "\"bad \\x escape\"", "\"\\u12\"", "\"\\u12", "[tru]", "[nul]",
+                "{} {}", "01", "-", "+1", "1.", ".5", "1e", "--1", "[1.2.3]", ""
+        };
+        for (String document : documents) {
+            assertThrows(JSONException.class, () -> {
+                JSONStreamReader reader = new JSONStreamReader(new StringReader(document));
+                reader.nextValue();
+                reader.peek();
+            }, document);
+        }
+    }
+
+    @Test
+    void testTruncatedStream() {
+        //Cut off in the middle of an element of a large array
+        StringBuilder document = new StringBuilder("[");
+        for (int i = 0; i < 2000; i++)
+            document.append("{\"id\":").append(i).append(",\"name\":\"element ").append(i).append("\"},");
+        document.setLength(document.length() - 20);
+
+        List<Object> elements = new ArrayList<>();
+        JSONStreamReader reader = new JSONStreamReader(new StringReader(document.toString()));
+        assertThrows(JSONException.class, () -> reader.forEachElement(elements::add));
+        assertEquals(1999, elements.size());
+    }
+}
@@ -0,0 +1,98 @@
+import dev.JustRed23.stonebrick.util.LatencyHistogram;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void testEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(new LatencyHistogram.Snapshot(0, 0, 0, 0, 0, 0, 0), histogram.snapshot());
+    }
+
+    @Test
+    void testSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10; i++)
+            histogram.record(i);
+
+        assertEquals(1, histogram.percentile(0));
+        assertEquals(5, histogram.percentile(50));
+        assertEquals(9, histogram.percentile(90));
+        assertEquals(10, histogram.percentile(100));
+        assertEquals(5, histogram.mean());
+    }
+
+    @Test
+    void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        //1 to 10000 microseconds, in random order
+        List<Long> values = new ArrayList<>();
+        for (long i = 1; i <= 10000; i++)
+            values.add(TimeUnit.MICROSECONDS.toNanos(i));
+        Collections.shuffle(values, new Random(42));
+        values.forEach(histogram::record);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(10000, snapshot.count());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(10000), snapshot.max());
+        assertEquals(5_000_500, snapshot.mean());
+        assertWithin(TimeUnit.MICROSECONDS.toNanos(5000), snapshot.p50());
+        assertWithin(TimeUnit.MICROSECONDS.toNanos(9000), snapshot.p90());
+        assertWithin(TimeUnit.MICROSECONDS.toNanos(9900), snapshot.p99());
+        assertWithin(TimeUnit.MICROSECONDS.toNanos(9990), snapshot.p999());
+        assertTrue(snapshot.p999() <= snapshot.max());
+    }
+
+    @Test
+    void testOutOfRangeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        assertEquals(0, histogram.max());
+
+        histogram.record(TimeUnit.DAYS.toNanos(1));
+        assertEquals(TimeUnit.HOURS.toNanos(1), histogram.max());
+        assertWithin(TimeUnit.HOURS.toNanos(1), histogram.percentile(100));
+    }
+
+    @Test
+    void testReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        histogram.reset();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.percentile(50));
+        assertEquals(0, histogram.max());
+    }
+
+    @Test
+    void testConcurrentRecording() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++)
+                    histogram.record(1000);
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        assertEquals(400_000, histogram.count());
+        assertEquals(1000, histogram.mean());
+    }
+
+    //Buckets split every power of two in 64, so a percentile is off by at most 1/64
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(Math.abs(actual - expected) <= expected / 64, "expected about " + expected + " but was " + actual);
+    }
+}
@@ -0,0 +1,208 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-process HTTP server for network tests, with configurable latency, payload size and error injection
+ */
+public class LocalHttpServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong fileBytes = new AtomicLong();
+
+    private volatile long latencyMs;
+    private volatile int payloadSize = 1024;
+    private volatile double errorRate;
+    private volatile int errorCode = 500;
+    private volatile byte[] file = new byte[0];
+    private volatile long failFileAfter = -1;
+    private volatile String[][] events = new String[0][];
+    private volatile long eventPauseMs;
+    private final AtomicInteger eventConnections = new AtomicInteger();
+    private final List<String> lastEventIds = new CopyOnWriteArrayList<>();
+
+    public LocalHttpServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 512);
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "Local HTTP Server");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.createContext("/file", this::handleFile);
+        server.createContext("/events", this::handleEvents);
+        server.start();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        hits.incrementAndGet();
+        try (exchange; InputStream is = exchange.getRequestBody()) {
+            is.readAllBytes();
+
+            if (latencyMs > 0)
+                TimeUnit.MILLISECONDS.sleep(latencyMs);
+
+            //A path of /status/<code> always answers with that code
+            String path = exchange.getRequestURI().getPath();
+            int status = path.startsWith("/status/") ? Integer.parseInt(path.substring("/status/".length()))
+                    : errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate ? errorCode : 200;
+            byte[] body = new byte[status != 200 ? 0 : payloadSize];
+            Arrays.fill(body, (byte) 'x');
+
+            exchange.getResponseHeaders().set("Content-Type", "text/plain");
+            exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+            if (body.length > 0) {
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(body);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //Serves the file set with file(byte[]), supporting byte ranges
+    private void handleFile(HttpExchange exchange) throws IOException {
+        hits.incrementAndGet();
+        try (exchange) {
+            byte[] file = this.file;
+            long from = 0, to = file.length - 1;
+            int status = 200;
+
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            if (range != null && range.startsWith("bytes=")) {
+                String[] bounds = range.substring(6).split("-");
+                from = Long.parseLong(bounds[0]);
+                to = Math.min(to, Long.parseLong(bounds[1]));
+                status = 206;
+                exchange.getResponseHeaders().set("Content-Range", "bytes " + from + "-" + to + "/" + file.length);
+            }
+
+            long length = to - from + 1;
+            long limit = failFileAfter >= 0 && from > 0 ? Math.min(length, failFileAfter) : length;
+            exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+            exchange.getResponseHeaders().set("ETag", "\"" + file.length + "\"");
+            exchange.sendResponseHeaders(status, length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                fileBytes.addAndGet(limit);
+                os.write(file, (int) from, (int) limit);
+            }
+        }
+    }
+
+    //Serves the next connection set with events(long, String[]...), a chunk at a time, and 204 once they are used up
+    private void handleEvents(HttpExchange exchange) throws IOException {
+        hits.incrementAndGet();
+        try (exchange) {
+            lastEventIds.add(String.valueOf(exchange.getRequestHeaders().getFirst("Last-Event-ID")));
+
+            String[][] events = this.events;
+            int connection = eventConnections.getAndIncrement();
+            if (connection >= events.length) {
+                exchange.sendResponseHeaders(204, -1);
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream os = exchange.getResponseBody()) {
+                for (int i = 0; i < events[connection].length; i++) {
+                    if (i > 0 && eventPauseMs > 0)
+                        TimeUnit.MILLISECONDS.sleep(eventPauseMs);
+                    os.write(events[connection][i].getBytes(StandardCharsets.UTF_8));
+                    os.flush();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sets the responses of /events, every connection sends the chunks of the next array with a pause in between and then closes
+     */
+    public LocalHttpServer events(long pauseMs, String[]... connections) {
+        this.eventPauseMs = pauseMs;
+        this.events = connections;
+        eventConnections.set(0);
+        lastEventIds.clear();
+        return this;
+    }
+
+    /**
+     * @return The Last-Event-ID header of every connection to /events, "null" when it was not sent
+     */
+    public List<String> lastEventIds() {
+        return List.copyOf(lastEventIds);
+    }
+
+    public LocalHttpServer file(byte[] file) {
+        this.file = file;
+        return this;
+    }
+
+    /**
+     * Makes every range that does not start at 0 break off after the given amount of bytes, -1 disables this
+     */
+    public LocalHttpServer failFileAfter(long bytes) {
+        this.failFileAfter = bytes;
+        return this;
+    }
+
+    public LocalHttpServer latency(long ms) {
+        this.latencyMs = ms;
+        return this;
+    }
+
+    public LocalHttpServer payloadSize(int bytes) {
+        this.payloadSize = bytes;
+        return this;
+    }
+
+    public LocalHttpServer errors(double rate, int code) {
+        this.errorRate = rate;
+        this.errorCode = code;
+        return this;
+    }
+
+    public String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public void resetHits() {
+        hits.set(0);
+    }
+
+    /**
+     * @return The amount of bytes of the file served so far
+     */
+    public long fileBytes() {
+        return fileBytes.get();
+    }
+
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
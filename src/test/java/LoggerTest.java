@@ -1,13 +1,21 @@
 import dev.JustRed23.abcm.Config;
 import dev.JustRed23.abcm.exception.ConfigInitException;
+import dev.JustRed23.stonebrick.log.FallbackConfig;
+import dev.JustRed23.stonebrick.log.LogLevel;
 import dev.JustRed23.stonebrick.log.SBLogger;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 
-import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.*;
 
 class LoggerTest {
 
+    @BeforeAll
+    static void init() throws ConfigInitException {
+        Config.init();
+    }
+
     @Test
     void testLogger() throws ConfigInitException {
         Config.init();
@@ -15,4 +23,62 @@ class LoggerTest {
         logger.info("Hello world!");
         assertNotNull(logger);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testHierarchicalLevels() {
+        FallbackConfig.LOG_LEVELS = "test.levels=DEBUG, test.levels.quiet=ERROR";
+        try {
+            SBLogger.reloadLevels();
+
+            Logger parent = SBLogger.getLogger("test.levels.Parent");
+            assertTrue(parent.isDebugEnabled());
+            assertFalse(parent.isTraceEnabled());
+
+            //The closest package wins
+            Logger quiet = SBLogger.getLogger("test.levels.quiet.Child");
+            assertFalse(quiet.isWarnEnabled());
+            assertTrue(quiet.isErrorEnabled());
+
+            //Prefixes only match whole package names
+            Logger sibling = SBLogger.getLogger("test.levelsother.Sibling");
+            assertFalse(sibling.isDebugEnabled());
+            assertTrue(sibling.isInfoEnabled());
+        } finally {
+            FallbackConfig.LOG_LEVELS = "";
+            SBLogger.reloadLevels();
+        }
+    }
+
+    @Test
+    void testSetLevel() {
+        Logger logger = SBLogger.getLogger("test.runtime.Logger");
+        assertFalse(logger.isDebugEnabled());
+
+        try {
+            SBLogger.setLevel("test.runtime", LogLevel.TRACE);
+            assertTrue(logger.isTraceEnabled());
+
+            //Loggers created afterwards get the level too
+            assertTrue(SBLogger.getLogger("test.runtime.Later").isTraceEnabled());
+
+            SBLogger.setLevel("test.runtime", null);
+            assertFalse(logger.isDebugEnabled());
+
+            SBLogger.setLevel("test.runtime.Logger", LogLevel.WARN);
+            assertFalse(logger.isInfoEnabled());
+        } finally {
+            //Discards the runtime changes
+            SBLogger.reloadLevels();
+        }
+        assertTrue(logger.isInfoEnabled());
+        assertFalse(logger.isDebugEnabled());
+    }
+
+    @Test
+    void testCaseInsensitiveRegistry() {
+        Logger logger = SBLogger.getLogger("test.Registry.Logger");
+        assertSame(logger, SBLogger.getLogger("test.Registry.Logger"));
+        assertSame(logger, SBLogger.getLogger("TEST.registry.logger"));
+        assertNotSame(logger, SBLogger.getLogger("test.Registry.Other"));
+    }
+}
@@ -0,0 +1,295 @@
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+import dev.JustRed23.abcm.Config;
+import dev.JustRed23.abcm.exception.ConfigInitException;
+import dev.JustRed23.stonebrick.exceptions.NetRequestException;
+import dev.JustRed23.stonebrick.net.Callback;
+import dev.JustRed23.stonebrick.net.NetworkManager;
+import dev.JustRed23.stonebrick.net.Request;
+import dev.JustRed23.stonebrick.net.Response;
+import dev.JustRed23.stonebrick.util.CommonThreads;
+import dev.JustRed23.stonebrick.util.LatencyHistogram;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NetworkLoadTest {
+
+    private static final int[] CONCURRENCY = {1, 8, 32, 128};
+    private static final int REQUESTS = 512;
+
+    private static LocalHttpServer server;
+
+    @BeforeAll
+    static void start() throws ConfigInitException, IOException {
+        Config.init();
+        server = new LocalHttpServer();
+    }
+
+    @AfterAll
+    static void stop() {
+        server.close();
+    }
+
+    @Test
+    void testErrorInjection() throws NetRequestException {
+        server.latency(0).payloadSize(64).errors(1, 503);
+        Response response = NetworkManager.get(server.url("/error")).blocking();
+        assertEquals(503, response.responseCode());
+        assertFalse(response.isSuccess());
+
+        server.errors(0, 500);
+        response = NetworkManager.get(server.url("/ok")).blocking();
+        assertTrue(response.isSuccess());
+        assertEquals(64, response.asBytes().length);
+    }
+
+    @Test
+    void testDeduplication() throws InterruptedException {
+        server.latency(200).payloadSize(128).errors(0, 500);
+        server.resetHits();
+
+        int callers = 50;
+        CountDownLatch done = new CountDownLatch(callers);
+        AtomicInteger successes = new AtomicInteger();
+        for (int i = 0; i < callers; i++) {
+            NetworkManager.get(server.url("/dedup")).async(new Callback() {
+                public void response(Request request, Response response, NetRequestException e) {
+                    if (response != null && response.isSuccess())
+                        successes.incrementAndGet();
+                    done.countDown();
+                }
+            });
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(callers, successes.get());
+        assertEquals(1, server.hits());
+    }
+
+    @Test
+    void testDeadline() {
+        server.latency(2000).payloadSize(64).errors(0, 500);
+        long start = System.nanoTime();
+        NetRequestException e = assertThrows(NetRequestException.class, () -> NetworkManager.get(server.url("/slow")).deadline(200).blocking());
+
+        assertTrue(e.getCause() instanceof TimeoutException, String.valueOf(e.getCause()));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000, "took " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    @Test
+    void testDeadlineReleased() throws NetRequestException {
+        server.latency(0).payloadSize(64).errors(0, 500);
+        BlockingQueue<Runnable> scheduled = ((ScheduledThreadPoolExecutor) CommonThreads.scheduledThread).getQueue();
+        int before = scheduled.size();
+
+        //The deadline of a completed request does not stay queued until it would have expired
+        for (int i = 0; i < 100; i++)
+            NetworkManager.get(server.url("/deadline/" + i)).deadline(60_000).blocking().close();
+        assertEquals(before, scheduled.size());
+    }
+
+    @Test
+    void testSpillToDisk() throws NetRequestException {
+        server.latency(0).payloadSize(64 * 1024).errors(0, 500);
+        Response response = NetworkManager.get(server.url("/spill")).spillThreshold(1024).blocking();
+
+        assertTrue(response.isSpilled());
+        assertEquals(64 * 1024, response.length());
+        assertEquals(64 * 1024, response.asBytes().length);
+        assertEquals(64 * 1024, response.asString().length());
+        response.close();
+
+        response = NetworkManager.get(server.url("/memory")).spillThreshold(128 * 1024).blocking();
+        assertFalse(response.isSpilled());
+        assertEquals(64 * 1024, response.asBytes().length);
+    }
+
+    @Test
+    void testSharedSpill() throws InterruptedException {
+        server.latency(200).payloadSize(64 * 1024).errors(0, 500);
+        int callers = 3;
+        CountDownLatch done = new CountDownLatch(callers);
+        AtomicInteger read = new AtomicInteger();
+        for (int i = 0; i < callers; i++) {
+            final boolean closeFirst = i == 0;
+            NetworkManager.get(server.url("/shared-spill")).spillThreshold(1024).async(new Callback() {
+                public void response(Request request, Response response, NetRequestException e) {
+                    try {
+                        //One caller closing its response must not delete the body the others still read
+                        if (!closeFirst)
+                            TimeUnit.MILLISECONDS.sleep(100);
+                        if (response != null && response.isSpilled() && response.asBytes().length == 64 * 1024)
+                            read.incrementAndGet();
+                        response.close();
+                    } catch (Exception ignored) {
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(callers, read.get());
+    }
+
+    @Test
+    @Tag("benchmark")
+    void testBlockingThroughput(TestReporter reporter) throws InterruptedException {
+        server.latency(5).payloadSize(4096).errors(0, 500);
+        for (int concurrency : CONCURRENCY) {
+            Report report = run(reporter, "blocking", concurrency, (id, latencies) -> {
+                long start = System.nanoTime();
+                Response response = NetworkManager.get(server.url("/blocking/" + id)).blocking();
+                latencies.record(System.nanoTime() - start);
+                return response.isSuccess();
+            });
+            assertEquals(REQUESTS, report.successes);
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void testAsyncThroughput(TestReporter reporter) throws InterruptedException {
+        server.latency(5).payloadSize(4096).errors(0, 500);
+        for (int concurrency : CONCURRENCY) {
+            Report report = run(reporter, "async", concurrency, (id, latencies) -> {
+                long start = System.nanoTime();
+                CountDownLatch done = new CountDownLatch(1);
+                AtomicInteger success = new AtomicInteger();
+                NetworkManager.get(server.url("/async/" + id)).async(new Callback() {
+                    public void response(Request request, Response response, NetRequestException e) {
+                        latencies.record(System.nanoTime() - start);
+                        if (response != null && response.isSuccess())
+                            success.set(1);
+                        done.countDown();
+                    }
+                });
+                return done.await(30, TimeUnit.SECONDS) && success.get() == 1;
+            });
+            assertEquals(REQUESTS, report.successes);
+        }
+    }
+
+    //Harness
+    @FunctionalInterface
+    private interface Scenario {
+        boolean run(int id, LatencyHistogram latencies) throws Exception;
+    }
+
+    private record Report(String name, int concurrency, int successes, double requestsPerSecond, LatencyHistogram.Snapshot latency, int peakThreads, long allocatedBytes) {
+        public String toString() {
+            return String.format("%-8s concurrency=%-4d ok=%d/%d %.0f req/s %s peakThreads=%d allocated=%.1fMB",
+                    name, concurrency, successes, REQUESTS, requestsPerSecond, latency, peakThreads, allocatedBytes / 1e6);
+        }
+    }
+
+    private static Report run(TestReporter reporter, String name, int concurrency, Scenario scenario) throws InterruptedException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        AllocationMeter allocations = new AllocationMeter();
+
+        LatencyHistogram latencies = new LatencyHistogram();
+        AtomicInteger successes = new AtomicInteger();
+        AtomicInteger ids = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            executor.execute(() -> {
+                try {
+                    if (scenario.run(ids.incrementAndGet(), latencies))
+                        successes.incrementAndGet();
+                } catch (Exception ignored) {}
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES));
+        long elapsed = System.nanoTime() - start;
+
+        Report report = new Report(name, concurrency, successes.get(), REQUESTS / (elapsed / 1e9), latencies.snapshot(),
+                threads.getPeakThreadCount(), allocations.stop());
+        reporter.publishEntry(name + "-" + concurrency, report.toString());
+        return report;
+    }
+
+    /**
+     * Measures the heap allocated by every thread, including threads that terminate during the run, as the growth of the heap plus everything collected in between.
+     * Garbage collection notifications are delivered asynchronously, so the result can miss a collection that ends right before it is stopped.
+     */
+    private static final class AllocationMeter implements NotificationListener {
+
+        private final Set<String> heapPools = new HashSet<>();
+        private final AtomicLong collected = new AtomicLong();
+        private final long usedBefore;
+
+        AllocationMeter() {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+                if (pool.getType() == MemoryType.HEAP)
+                    heapPools.add(pool.getName());
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+                ((NotificationEmitter) collector).addNotificationListener(this, null, null);
+            usedBefore = heapUsed();
+        }
+
+        public void handleNotification(Notification notification, Object handback) {
+            if (!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION))
+                return;
+
+            GcInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData()).getGcInfo();
+            collected.addAndGet(Math.max(0, heapUsed(info.getMemoryUsageBeforeGc()) - heapUsed(info.getMemoryUsageAfterGc())));
+        }
+
+        long stop() {
+            long allocated = heapUsed() - usedBefore + collected.get();
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                try {
+                    ((NotificationEmitter) collector).removeNotificationListener(this);
+                } catch (ListenerNotFoundException ignored) {}
+            }
+            return allocated;
+        }
+
+        private long heapUsed() {
+            return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        }
+
+        private long heapUsed(Map<String, MemoryUsage> pools) {
+            long used = 0;
+            for (Map.Entry<String, MemoryUsage> pool : pools.entrySet())
+                if (heapPools.contains(pool.getKey()))
+                    used += pool.getValue().getUsed();
+            return used;
+        }
+    }
+}
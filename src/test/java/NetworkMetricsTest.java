@@ -0,0 +1,68 @@
+import dev.JustRed23.abcm.Config;
+import dev.JustRed23.abcm.exception.ConfigInitException;
+import dev.JustRed23.stonebrick.exceptions.NetRequestException;
+import dev.JustRed23.stonebrick.net.HostMetrics;
+import dev.JustRed23.stonebrick.net.NetworkManager;
+import dev.JustRed23.stonebrick.net.NetworkMetrics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NetworkMetricsTest {
+
+    @BeforeAll
+    static void init() throws ConfigInitException {
+        Config.init();
+    }
+
+    @Test
+    void testHostSnapshot() throws IOException, NetRequestException {
+        try (LocalHttpServer server = new LocalHttpServer().payloadSize(2048)) {
+            String host = server.url("").substring("http://".length());
+            for (int i = 0; i < 3; i++)
+                NetworkManager.get(server.url("/ok/" + i)).blocking().close();
+            NetworkManager.get(server.url("/status/404")).blocking().close();
+
+            HostMetrics.Snapshot snapshot = NetworkMetrics.snapshot(host);
+            assertNotNull(snapshot);
+            assertEquals(host, snapshot.host());
+            assertEquals(4, snapshot.requests());
+            assertEquals(0, snapshot.errors());
+            assertEquals(0.0, snapshot.errorRate());
+            assertEquals(Map.of(200, 3L, 404, 1L), snapshot.statusCodes());
+            assertEquals(3 * 2048, snapshot.bytesIn());
+
+            assertEquals(4, snapshot.total().count());
+            assertEquals(4, snapshot.firstByte().count());
+            assertTrue(snapshot.total().p50() > 0);
+            assertTrue(snapshot.firstByte().max() <= snapshot.total().max());
+
+            assertTrue(NetworkMetrics.snapshot().containsKey(host));
+        }
+    }
+
+    @Test
+    void testFailedRequests() throws IOException {
+        String host;
+        try (LocalHttpServer server = new LocalHttpServer()) {
+            host = server.url("").substring("http://".length());
+        }
+
+        //Nothing listens on the port anymore
+        assertThrows(NetRequestException.class, () -> NetworkManager.get("http://" + host + "/gone").blocking());
+        HostMetrics.Snapshot snapshot = NetworkMetrics.snapshot(host);
+        assertNotNull(snapshot);
+        assertEquals(1, snapshot.errors());
+        assertEquals(1.0, snapshot.errorRate());
+        assertTrue(snapshot.statusCodes().isEmpty());
+    }
+
+    @Test
+    void testUnknownHost() {
+        assertNull(NetworkMetrics.snapshot("unknown.invalid:1"));
+    }
+}
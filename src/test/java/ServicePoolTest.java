@@ -0,0 +1,312 @@
+import dev.JustRed23.abcm.Config;
+import dev.JustRed23.abcm.exception.ConfigInitException;
+import dev.JustRed23.stonebrick.service.Service;
+import dev.JustRed23.stonebrick.service.ServiceConfig;
+import dev.JustRed23.stonebrick.service.ServicePool;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//Services are created by the pool, so they report through static fields and every test uses its own service class.
+//Waits only have upper bounds far above the expected time, assertions never depend on how fast the machine is
+class ServicePoolTest {
+
+    @BeforeAll
+    static void init() throws ConfigInitException {
+        Config.init();
+        ServiceConfig.WORKER_THREADS = 4;
+    }
+
+    @Test
+    void testSubSecondPeriod() throws InterruptedException {
+        ServicePool pool = start(FastService.class);
+        //Five runs 100 ms apart, a period rounded up to a second would take 4 seconds
+        assertTrue(FastService.RUNS.await(3, TimeUnit.SECONDS), FastService.RUNS.getCount() + " runs missing");
+        stop(pool);
+    }
+
+    @Test
+    void testShouldRunRecheck() throws InterruptedException {
+        ServicePool pool = start(WaitingService.class);
+        //Asked again after its period instead of the 10 second maximum
+        assertTrue(WaitingService.CHECKS.await(5, TimeUnit.SECONDS));
+        assertEquals(1, WaitingService.RUNS.getCount(), "ran before it was ready");
+
+        WaitingService.READY.set(true);
+        assertTrue(WaitingService.RUNS.await(5, TimeUnit.SECONDS));
+        stop(pool);
+    }
+
+    @Test
+    void testCheckedOnWorker() throws InterruptedException {
+        ServicePool pool = new ServicePool(null);
+        pool.addService(BlockedCheckService.class);
+        pool.addService(NeighbourService.class);
+        pool.start();
+
+        //Another service keeps running while the first one is stuck in its check
+        assertTrue(BlockedCheckService.CHECKING.await(5, TimeUnit.SECONDS));
+        assertTrue(BlockedCheckService.THREAD.startsWith("Service Worker"), BlockedCheckService.THREAD);
+        assertTrue(NeighbourService.RUNS.await(5, TimeUnit.SECONDS));
+
+        BlockedCheckService.RELEASE.countDown();
+        stop(pool);
+    }
+
+    @Test
+    void testShutdownDoesNotInterruptServices() throws InterruptedException {
+        ServicePool pool = start(SlowCheckService.class);
+        assertTrue(SlowCheckService.CHECKING.await(5, TimeUnit.SECONDS));
+        stop(pool);
+
+        //Shutting down waited for the check in progress without interrupting it
+        assertTrue(SlowCheckService.CHECKED.get());
+        assertFalse(SlowCheckService.INTERRUPTED.get());
+    }
+
+    @Test
+    void testOverlapLimit() throws InterruptedException {
+        ServicePool pool = start(OverlappingService.class);
+        assertTrue(OverlappingService.STARTED.await(5, TimeUnit.SECONDS));
+
+        //Due every 50 ms but both runs are blocked, with 4 workers still only 2 may overlap
+        TimeUnit.MILLISECONDS.sleep(300);
+        assertEquals(2, OverlappingService.RUNS.get());
+
+        OverlappingService.RELEASE.countDown();
+        stop(pool);
+        assertEquals(2, OverlappingService.MAX_RUNNING.get());
+        //Shutting down waits for the runs in progress
+        assertEquals(0, OverlappingService.RUNNING.get());
+    }
+
+    @Test
+    void testDeferral() throws InterruptedException {
+        ServicePool pool = start(DeferredService.class);
+        assertTrue(DeferredService.FIRST.await(5, TimeUnit.SECONDS));
+
+        //The next run becomes due while the first one is blocked, it is deferred instead of started
+        TimeUnit.MILLISECONDS.sleep(300);
+        assertEquals(1, DeferredService.RUNS.get());
+
+        //A deferred run is not queued again, it only starts because the first one finished
+        DeferredService.RELEASE.countDown();
+        assertTrue(DeferredService.SECOND.await(5, TimeUnit.SECONDS));
+        stop(pool);
+        assertEquals(1, DeferredService.MAX_RUNNING.get());
+    }
+
+    @Test
+    void testTimeout() throws InterruptedException {
+        ServicePool pool = start(TimeoutService.class);
+        assertTrue(TimeoutService.COMPLETED.await(5, TimeUnit.SECONDS));
+        stop(pool);
+
+        //Reported once, on the worker and with the interrupt as the cause
+        assertEquals(1, TimeoutService.ERRORS.size());
+        Exception error = TimeoutService.ERRORS.get(0);
+        assertTrue(error instanceof TimeoutException, error.toString());
+        assertTrue(error.getCause() instanceof InterruptedException, String.valueOf(error.getCause()));
+        assertTrue(TimeoutService.ERROR_THREAD.startsWith("Service Worker"), TimeoutService.ERROR_THREAD);
+    }
+
+    private static ServicePool start(Class<? extends Service> service) {
+        ServicePool pool = new ServicePool(null);
+        pool.addService(service);
+        pool.start();
+        return pool;
+    }
+
+    private static void stop(ServicePool pool) throws InterruptedException {
+        pool.shutdown();
+        pool.join(5000);
+        assertFalse(pool.isAlive());
+    }
+
+    public static class FastService extends Service {
+        static final CountDownLatch RUNS = new CountDownLatch(5);
+
+        public boolean shouldRun() {
+            return true;
+        }
+
+        public long delayBetweenRuns() {
+            return 100;
+        }
+
+        public void run() {
+            RUNS.countDown();
+        }
+    }
+
+    public static class NeighbourService extends Service {
+        static final CountDownLatch RUNS = new CountDownLatch(3);
+
+        public boolean shouldRun() {
+            return true;
+        }
+
+        public long delayBetweenRuns() {
+            return 50;
+        }
+
+        public void run() {
+            RUNS.countDown();
+        }
+    }
+
+    public static class WaitingService extends Service {
+        static final AtomicBoolean READY = new AtomicBoolean();
+        static final CountDownLatch CHECKS = new CountDownLatch(3), RUNS = new CountDownLatch(1);
+
+        public boolean shouldRun() {
+            CHECKS.countDown();
+            return READY.get();
+        }
+
+        public long delayBetweenRuns() {
+            return 100;
+        }
+
+        public void run() {
+            RUNS.countDown();
+        }
+    }
+
+    public static class BlockedCheckService extends Service {
+        static final CountDownLatch CHECKING = new CountDownLatch(1), RELEASE = new CountDownLatch(1);
+        static volatile String THREAD;
+
+        public boolean shouldRun() {
+            THREAD = Thread.currentThread().getName();
+            CHECKING.countDown();
+            try {
+                RELEASE.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }
+
+        public long delayBetweenRuns() {
+            return TimeUnit.SECONDS.toMillis(10);
+        }
+
+        public void run() {}
+    }
+
+    public static class OverlappingService extends Service {
+        static final AtomicInteger RUNNING = new AtomicInteger(), MAX_RUNNING = new AtomicInteger(), RUNS = new AtomicInteger();
+        static final CountDownLatch STARTED = new CountDownLatch(2), RELEASE = new CountDownLatch(1);
+
+        public boolean shouldRun() {
+            return true;
+        }
+
+        public long delayBetweenRuns() {
+            return 50;
+        }
+
+        public int maxConcurrentRuns() {
+            return 2;
+        }
+
+        public void run() throws InterruptedException {
+            MAX_RUNNING.accumulateAndGet(RUNNING.incrementAndGet(), Math::max);
+            RUNS.incrementAndGet();
+            STARTED.countDown();
+            try {
+                RELEASE.await();
+            } finally {
+                RUNNING.decrementAndGet();
+            }
+        }
+    }
+
+    public static class DeferredService extends Service {
+        static final AtomicInteger RUNNING = new AtomicInteger(), MAX_RUNNING = new AtomicInteger(), RUNS = new AtomicInteger();
+        static final CountDownLatch FIRST = new CountDownLatch(1), SECOND = new CountDownLatch(1), RELEASE = new CountDownLatch(1);
+
+        public boolean shouldRun() {
+            return true;
+        }
+
+        public long delayBetweenRuns() {
+            return 50;
+        }
+
+        public void run() throws InterruptedException {
+            MAX_RUNNING.accumulateAndGet(RUNNING.incrementAndGet(), Math::max);
+            try {
+                if (RUNS.incrementAndGet() == 1) {
+                    FIRST.countDown();
+                    RELEASE.await();
+                } else SECOND.countDown();
+            } finally {
+                RUNNING.decrementAndGet();
+            }
+        }
+    }
+
+    public static class TimeoutService extends Service {
+        static final List<Exception> ERRORS = new CopyOnWriteArrayList<>();
+        static final CountDownLatch COMPLETED = new CountDownLatch(1);
+        static volatile String ERROR_THREAD;
+
+        public boolean shouldRun() {
+            return true;
+        }
+
+        public long delayBetweenRuns() {
+            return TimeUnit.SECONDS.toMillis(10);
+        }
+
+        public long runTimeout() {
+            return 100;
+        }
+
+        public void run() throws InterruptedException {
+            TimeUnit.SECONDS.sleep(5);
+        }
+
+        public void onError(Exception e) {
+            ERROR_THREAD = Thread.currentThread().getName();
+            ERRORS.add(e);
+        }
+
+        public void onComplete() {
+            COMPLETED.countDown();
+        }
+    }
+
+    public static class SlowCheckService extends Service {
+        static final AtomicBoolean CHECKED = new AtomicBoolean(), INTERRUPTED = new AtomicBoolean();
+        static final CountDownLatch CHECKING = new CountDownLatch(1);
+
+        public boolean shouldRun() {
+            CHECKING.countDown();
+            try {
+                TimeUnit.MILLISECONDS.sleep(300);
+                CHECKED.set(true);
+            } catch (InterruptedException e) {
+                INTERRUPTED.set(true);
+            }
+            return false;
+        }
+
+        public long delayBetweenRuns() {
+            return TimeUnit.SECONDS.toMillis(10);
+        }
+
+        public void run() {}
+    }
+}
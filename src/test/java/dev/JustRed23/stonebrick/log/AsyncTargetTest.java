@@ -0,0 +1,166 @@
+package dev.JustRed23.stonebrick.log;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncTargetTest {
+
+    private static final String NL = System.lineSeparator();
+
+    @Test
+    void testDrop() throws InterruptedException {
+        GatedStream stream = new GatedStream();
+        AsyncTarget target = blocked(stream, OverflowPolicy.DROP);
+
+        //Four slots are free while the writer is stuck on line 0
+        for (int i = 1; i <= 6; i++)
+            target.write(LogLevel.INFO, "line " + i, null);
+        target.write(LogLevel.ERROR, "error", null);
+        assertEquals(3, target.dropped());
+        assertEquals(2, target.dropped(LogLevel.INFO));
+        assertEquals(1, target.dropped(LogLevel.ERROR));
+
+        stream.open.countDown();
+        target.flush();
+        assertEquals(lines("line 0", "line 1", "line 2", "line 3", "line 4"), stream.text());
+        target.close();
+    }
+
+    @Test
+    void testDropBelowWarn() throws InterruptedException {
+        GatedStream stream = new GatedStream();
+        AsyncTarget target = blocked(stream, OverflowPolicy.DROP_BELOW_WARN);
+        for (int i = 1; i <= 4; i++)
+            target.write(LogLevel.INFO, "line " + i, null);
+        target.write(LogLevel.DEBUG, "debug", null);
+        target.write(LogLevel.INFO, "info", null);
+
+        Thread warning = new Thread(() -> target.write(LogLevel.WARN, "warning", null));
+        warning.start();
+        warning.join(200);
+        assertTrue(warning.isAlive(), "A warning waits for room");
+
+        stream.open.countDown();
+        warning.join(5000);
+        assertFalse(warning.isAlive());
+        target.flush();
+
+        assertEquals(lines("line 0", "line 1", "line 2", "line 3", "line 4", "warning"), stream.text());
+        assertEquals(2, target.dropped());
+        assertEquals(1, target.dropped(LogLevel.DEBUG));
+        assertEquals(0, target.dropped(LogLevel.WARN));
+        target.close();
+    }
+
+    @Test
+    void testBlock() throws InterruptedException {
+        GatedStream stream = new GatedStream();
+        AsyncTarget target = blocked(stream, OverflowPolicy.BLOCK);
+        for (int i = 1; i <= 4; i++)
+            target.write(LogLevel.INFO, "line " + i, null);
+
+        Thread blocked = new Thread(() -> target.write(LogLevel.TRACE, "line 5", null));
+        blocked.start();
+        blocked.join(200);
+        assertTrue(blocked.isAlive(), "Every level waits for room");
+
+        stream.open.countDown();
+        blocked.join(5000);
+        assertFalse(blocked.isAlive());
+        target.flush();
+
+        assertEquals(lines("line 0", "line 1", "line 2", "line 3", "line 4", "line 5"), stream.text());
+        assertEquals(0, target.dropped());
+        target.close();
+    }
+
+    @Test
+    void testFlushAndClose() {
+        GatedStream stream = new GatedStream();
+        stream.open.countDown();
+        AsyncTarget target = new AsyncTarget(new PrintStream(stream, false, StandardCharsets.UTF_8), StandardCharsets.UTF_8, 4, OverflowPolicy.BLOCK);
+
+        String[] expected = new String[100];
+        for (int i = 0; i < expected.length; i++)
+            target.write(LogLevel.INFO, expected[i] = "line " + i, null);
+        target.flush();
+        assertEquals(lines(expected), stream.text());
+
+        //Lines written before closing reach the stream, later ones are written directly
+        target.write(LogLevel.INFO, "pending", null);
+        target.close();
+        assertTrue(stream.text().endsWith(lines("line 99", "pending")));
+        target.write(LogLevel.INFO, "after close", null);
+        assertTrue(stream.text().endsWith(lines("pending", "after close")));
+    }
+
+    @Test
+    void testFailingLineIsSkipped() {
+        GatedStream stream = new GatedStream();
+        stream.open.countDown();
+        AsyncTarget target = new AsyncTarget(new PrintStream(stream, false, StandardCharsets.UTF_8), StandardCharsets.UTF_8, 4, OverflowPolicy.BLOCK);
+
+        Throwable broken = new Throwable() {
+            public void printStackTrace(PrintWriter s) {
+                throw new IllegalStateException("Broken stack trace");
+            }
+        };
+        target.write(LogLevel.ERROR, "broken", broken);
+        for (int i = 0; i < 10; i++)
+            target.write(LogLevel.INFO, "line " + i, null);
+        target.flush();
+
+        assertEquals(lines("line 0", "line 1", "line 2", "line 3", "line 4", "line 5", "line 6", "line 7", "line 8", "line 9"), stream.text());
+        target.close();
+    }
+
+    //Returns a target whose writer is stuck writing its first line until the stream is opened
+    private static AsyncTarget blocked(GatedStream stream, OverflowPolicy policy) throws InterruptedException {
+        AsyncTarget target = new AsyncTarget(new PrintStream(stream, false, StandardCharsets.UTF_8), StandardCharsets.UTF_8, 4, policy);
+        target.write(LogLevel.INFO, "line 0", null);
+        assertTrue(stream.entered.await(5, TimeUnit.SECONDS));
+        return target;
+    }
+
+    private static String lines(String... lines) {
+        return String.join(NL, lines) + NL;
+    }
+
+    private static class GatedStream extends OutputStream {
+        private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch open = new CountDownLatch(1);
+
+        public void write(int b) throws InterruptedIOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        public void write(byte[] b, int off, int len) throws InterruptedIOException {
+            entered.countDown();
+            try {
+                open.await();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            synchronized (data) {
+                data.write(b, off, len);
+            }
+        }
+
+        String text() {
+            synchronized (data) {
+                return data.toString(StandardCharsets.UTF_8);
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package dev.JustRed23.stonebrick.log;
+
+import dev.JustRed23.abcm.Config;
+import dev.JustRed23.abcm.exception.ConfigInitException;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlightRecorderTest {
+
+    @BeforeAll
+    static void init() throws ConfigInitException {
+        Config.init();
+    }
+
+    @Test
+    void testDump() throws IOException {
+        Path dir = Files.createTempDirectory("flight");
+        try {
+            FlightRecorder recorder = new FlightRecorder(16, 30, dir.resolve("flight.log").toString());
+            SBFallback logger = new SBFallback("flight");
+            StringBuilder mutable = new StringBuilder("before");
+
+            recorder.record(logger, LogLevel.DEBUG, "value {} and {}", 42, mutable, null, 2, null);
+            recorder.record(logger, LogLevel.ERROR, "failed", null, null, null, -1, new IllegalStateException("boom"));
+            mutable.replace(0, mutable.length(), "after");
+
+            Path dump = recorder.dump();
+            assertNotNull(dump);
+            assertTrue(dump.getFileName().toString().startsWith("flight-"), dump.toString());
+
+            String content = Files.readString(dump);
+            //Arguments are formatted when dumped
+            assertTrue(content.contains("[DEBUG] flight - value 42 and after"), content);
+            assertTrue(content.contains("[ERROR] flight - failed"), content);
+            assertTrue(content.contains("java.lang.IllegalStateException: boom"), content);
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    void testKeepsLatestEvents() throws IOException {
+        Path dir = Files.createTempDirectory("flight");
+        try {
+            FlightRecorder recorder = new FlightRecorder(4, 30, dir.resolve("flight.log").toString());
+            SBFallback logger = new SBFallback("flight");
+            for (int i = 0; i < 10; i++)
+                recorder.record(logger, LogLevel.TRACE, "event {}", i, null, null, 1, null);
+
+            String content = Files.readString(recorder.dump());
+            for (int i = 0; i < 6; i++)
+                assertFalse(content.contains("event " + i + System.lineSeparator()), content);
+            for (int i = 6; i < 10; i++)
+                assertTrue(content.contains("event " + i + System.lineSeparator()), content);
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    void testEmptyDump() throws IOException {
+        Path dir = Files.createTempDirectory("flight");
+        try {
+            FlightRecorder recorder = new FlightRecorder(4, 30, dir.resolve("flight.log").toString());
+            assertNull(recorder.dump());
+            try (Stream<Path> files = Files.list(dir)) {
+                assertEquals(0, files.count());
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList())
+                Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package dev.JustRed23.stonebrick.log;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonLayoutTest {
+
+    @Test
+    void testEscaping() {
+        String line = line("quote \" backslash \\ newline \n tab \t bell \u0007 unicode \u00e9", -1);
+        assertTrue(line.contains("\"message\":\"quote \\\" backslash \\\\ newline \\n tab \\t bell \\u0007 unicode \u00e9\""), line);
+        for (char c : line.toCharArray())
+            assertTrue(c >= 0x20, "unescaped control character in " + line);
+    }
+
+    @Test
+    void testFormattedMessage() {
+        String line = line("{} and {}", 2, "a \"quoted\"", new StringBuilder("line\r\nbreak"));
+        assertTrue(line.contains("\"message\":\"a \\\"quoted\\\" and line\\r\\nbreak\""), line);
+        assertTrue(line.contains("\"arguments\":[\"a \\\"quoted\\\"\",\"line\\r\\nbreak\"]"), line);
+    }
+
+    @Test
+    void testArgumentTypes() {
+        Object[] args = {1, 2L, (short) 3, 1.5, 2.5f, true, "text", null, Double.NaN, 'c'};
+        StringBuilder builder = new StringBuilder();
+        JsonLayout.append(builder, LogLevel.INFO, "test", "values", null, null, args, args.length, null);
+
+        String line = builder.toString();
+        assertTrue(line.contains("\"arguments\":[1,2,3,1.5,2.5,true,\"text\",null,\"NaN\",\"c\"]"), line);
+    }
+
+    @Test
+    void testCauseChain() {
+        Throwable inner = new IOException("inner \"cause\"");
+        Throwable outer = new IllegalStateException("outer", inner);
+
+        StringBuilder builder = new StringBuilder();
+        JsonLayout.append(builder, LogLevel.ERROR, "test", "failed", null, null, null, -1, outer);
+        String line = builder.toString();
+
+        assertTrue(line.contains("\"exception\":{\"type\":\"java.lang.IllegalStateException\",\"message\":\"outer\""), line);
+        assertTrue(line.contains("\"cause\":{\"type\":\"java.io.IOException\",\"message\":\"inner \\\"cause\\\"\""), line);
+        assertTrue(line.endsWith("}}}"), line);
+
+        //Long chains are cut off
+        Throwable chain = new RuntimeException((String) null);
+        for (int i = 0; i < 20; i++)
+            chain = new RuntimeException("level " + i, chain);
+        builder.setLength(0);
+        JsonLayout.append(builder, LogLevel.ERROR, "test", "failed", null, null, null, -1, chain);
+        assertEquals(9, builder.toString().split("\"type\":").length - 1);
+    }
+
+    private static String line(String message, int count, Object... args) {
+        StringBuilder builder = new StringBuilder();
+        if (count < 0)
+            JsonLayout.append(builder, LogLevel.INFO, "test", message, null, null, null, -1, null);
+        else JsonLayout.append(builder, LogLevel.INFO, "test", message, args[0], args[1], null, count, null);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,70 @@
+package dev.JustRed23.stonebrick.log;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogRateLimiterTest {
+
+    @Test
+    void testBudget() {
+        LogRateLimiter limiter = new LogRateLimiter(3, 60_000);
+        for (int i = 0; i < 3; i++)
+            assertEquals(0, limiter.acquire("message {}", LogLevel.INFO));
+        assertEquals(-1, limiter.acquire("message {}", LogLevel.INFO));
+        assertEquals(-1, limiter.acquire("message {}", LogLevel.INFO));
+
+        //Every call site has its own budget
+        assertEquals(0, limiter.acquire("other {}", LogLevel.INFO));
+    }
+
+    @Test
+    void testWindowReset() throws InterruptedException {
+        LogRateLimiter limiter = new LogRateLimiter(2, 100);
+        for (int i = 0; i < 5; i++)
+            limiter.acquire("message", LogLevel.INFO);
+        TimeUnit.MILLISECONDS.sleep(150);
+
+        //The first message of the next window reports the suppressed ones and starts a new budget
+        assertEquals(3, limiter.acquire("message", LogLevel.INFO));
+        assertEquals(0, limiter.acquire("message", LogLevel.INFO));
+        assertEquals(-1, limiter.acquire("message", LogLevel.INFO));
+    }
+
+    @Test
+    void testSummary() throws InterruptedException {
+        LogRateLimiter limiter = new LogRateLimiter(1, 100);
+        for (int i = 0; i < 3; i++)
+            limiter.acquire("message", LogLevel.WARN);
+
+        List<String> reports = new ArrayList<>();
+        limiter.drain(false, (level, format, suppressed) -> reports.add(level + " " + format + " " + suppressed));
+        assertTrue(reports.isEmpty(), reports.toString());
+
+        //Reported without another message of the same call site once the window ended
+        TimeUnit.MILLISECONDS.sleep(150);
+        limiter.drain(false, (level, format, suppressed) -> reports.add(level + " " + format + " " + suppressed));
+        assertEquals(List.of("WARN message 2"), reports);
+        assertEquals(0, limiter.acquire("message", LogLevel.WARN));
+
+        //On shutdown the current window is reported as well
+        limiter.acquire("message", LogLevel.ERROR);
+        limiter.drain(true, (level, format, suppressed) -> reports.add(level + " " + format + " " + suppressed));
+        assertEquals(List.of("WARN message 2", "ERROR message 1"), reports);
+    }
+
+    @Test
+    void testIdleCallSitesAreEvicted() throws InterruptedException {
+        LogRateLimiter limiter = new LogRateLimiter(1, 50);
+        for (int i = 0; i < 1024; i++)
+            limiter.acquire("message " + i, LogLevel.INFO);
+        TimeUnit.MILLISECONDS.sleep(100);
+
+        assertEquals(0, limiter.acquire("new message", LogLevel.INFO));
+        assertEquals(-1, limiter.acquire("new message", LogLevel.INFO));
+    }
+}
@@ -0,0 +1,96 @@
+package dev.JustRed23.stonebrick.log;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RollingFileOutputStreamTest {
+
+    @Test
+    void testSizeRotation() throws IOException {
+        Path dir = Files.createTempDirectory("stonebrick");
+        Path log = dir.resolve("app.log");
+
+        try (RollingFileOutputStream out = new RollingFileOutputStream(log.toString(), 100, RotationInterval.NONE, 0, false)) {
+            //Rotates after every 4th line of 30 bytes
+            for (int i = 0; i < 10; i++) {
+                out.write(line(i));
+                out.flush();
+            }
+        }
+
+        File[] rotated = rotated(dir, "app");
+        assertEquals(2, rotated.length);
+        assertTrue(rotated[0].getName().endsWith("-1.log"), rotated[0].getName());
+        assertTrue(rotated[1].getName().endsWith("-2.log"), rotated[1].getName());
+
+        StringBuilder content = new StringBuilder();
+        for (File segment : rotated)
+            content.append(Files.readString(segment.toPath()));
+        content.append(Files.readString(log));
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 10; i++)
+            expected.append(new String(line(i), StandardCharsets.UTF_8));
+        assertEquals(expected.toString(), content.toString());
+        delete(dir);
+    }
+
+    @Test
+    void testRetentionKeepsUnrelatedFiles() throws IOException, InterruptedException {
+        Path dir = Files.createTempDirectory("stonebrick");
+        Path log = dir.resolve("app.log");
+        //Look like rotated files at first sight, but are not
+        Path unrelated = Files.writeString(dir.resolve("app-2024.log"), "keep");
+        Path temp = Files.writeString(dir.resolve("app-2024-01-01-1.log.gz.tmp"), "keep");
+
+        try (RollingFileOutputStream out = new RollingFileOutputStream(log.toString(), 10, RotationInterval.NONE, 2, true)) {
+            for (int i = 0; i < 5; i++) {
+                out.write(line(i));
+                out.flush();
+            }
+        }
+
+        //Compression and retention run in the background
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        File[] rotated;
+        do {
+            TimeUnit.MILLISECONDS.sleep(20);
+            rotated = rotated(dir, "app");
+        } while ((rotated.length != 2 || !Arrays.stream(rotated).allMatch(file -> file.getName().endsWith(".gz"))) && System.nanoTime() < end);
+
+        assertEquals(2, rotated.length);
+        assertTrue(rotated[0].getName().endsWith("-4.log.gz"), rotated[0].getName());
+        assertTrue(rotated[1].getName().endsWith("-5.log.gz"), rotated[1].getName());
+        assertTrue(Files.exists(unrelated));
+        assertTrue(Files.exists(temp));
+        delete(dir);
+    }
+
+    private static byte[] line(int i) {
+        return String.format("line %02d %20s\n", i, "").getBytes(StandardCharsets.UTF_8);
+    }
+
+    //Rotated segments sorted by index
+    private static File[] rotated(Path dir, String base) {
+        File[] files = dir.toFile().listFiles((d, name) -> name.matches(base + "-\\d{4}-\\d{2}-\\d{2}-\\d+\\.log(\\.gz)?"));
+        assertNotNull(files);
+        Arrays.sort(files, Comparator.comparingInt(file -> Integer.parseInt(file.getName().replaceAll(".*-(\\d+)\\.log(\\.gz)?", "$1"))));
+        return files;
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package dev.JustRed23.stonebrick.net;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//Every test blocks the workers first, so the order is decided by the queue and not by how fast the tasks are dispatched
+class RequestDispatcherTest {
+
+    private RequestDispatcher dispatcher;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void create() {
+        NetworkConfig.DISPATCHER_THREADS = 1;
+        NetworkConfig.DISPATCHER_THREADS_PER_HOST = 0;
+        NetworkConfig.PRIORITY_AGING = 60_000;
+        dispatcher = new RequestDispatcher();
+    }
+
+    @AfterEach
+    void shutdown() {
+        release.countDown();
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void testPriorityOrder() throws InterruptedException {
+        block("a");
+        List<String> order = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(4);
+        dispatch(Priority.LOW, "a", "low", order, done);
+        dispatch(Priority.NORMAL, "a", "normal 1", order, done);
+        dispatch(Priority.HIGH, "a", "high", order, done);
+        dispatch(Priority.NORMAL, "a", "normal 2", order, done);
+        assertEquals(2, dispatcher.queued(Priority.NORMAL));
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("high", "normal 1", "normal 2", "low"), order);
+        assertEquals(0, dispatcher.queued(Priority.NORMAL));
+        assertEquals(1, dispatcher.queueWait(Priority.LOW).count());
+    }
+
+    @Test
+    void testAging() throws InterruptedException {
+        NetworkConfig.PRIORITY_AGING = 50;
+        block("a");
+        List<String> order = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(2);
+        dispatch(Priority.LOW, "a", "old", order, done);
+
+        //Waited four aging periods, more than the two priorities between LOW and HIGH
+        TimeUnit.MILLISECONDS.sleep(200);
+        dispatch(Priority.HIGH, "a", "new", order, done);
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("old", "new"), order);
+    }
+
+    @Test
+    void testPerHostCap() throws InterruptedException {
+        NetworkConfig.DISPATCHER_THREADS = 4;
+        NetworkConfig.DISPATCHER_THREADS_PER_HOST = 2;
+        AtomicInteger running = new AtomicInteger(), maxRunning = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(2), finished = new CountDownLatch(4);
+        for (int i = 0; i < 4; i++) {
+            dispatcher.dispatch(Priority.NORMAL, "slow", () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                started.countDown();
+                await(release);
+                running.decrementAndGet();
+                finished.countDown();
+            });
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        //Two workers are still free for other hosts while the slow host is at its cap
+        CountDownLatch other = new CountDownLatch(2);
+        dispatcher.dispatch(Priority.LOW, "other", other::countDown);
+        dispatcher.dispatch(Priority.LOW, "other", other::countDown);
+        assertTrue(other.await(5, TimeUnit.SECONDS));
+        assertEquals(2, dispatcher.queued(Priority.NORMAL));
+
+        release.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    void testHostLimiterCap() throws InterruptedException {
+        NetworkConfig.DISPATCHER_THREADS = 4;
+        NetworkManager.limiter("limited", 0, 1);
+        AtomicInteger running = new AtomicInteger(), maxRunning = new AtomicInteger();
+        CountDownLatch finished = new CountDownLatch(3);
+        for (int i = 0; i < 3; i++) {
+            dispatcher.dispatch(Priority.NORMAL, "limited", () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                await(release);
+                running.decrementAndGet();
+                finished.countDown();
+            });
+        }
+
+        //The limiter only lets one request through, the others wait in the queue instead of on a worker
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertEquals(2, dispatcher.queued(Priority.NORMAL));
+
+        release.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    void testShutdown() throws InterruptedException {
+        AtomicReference<Thread> first = new AtomicReference<>(), second = new AtomicReference<>();
+        block("a", first);
+        CountDownLatch queued = new CountDownLatch(1);
+        dispatcher.dispatch(Priority.NORMAL, "a", queued::countDown);
+
+        //Requests queued before the shutdown still run, then the workers of that generation stop
+        dispatcher.shutdown();
+        release.countDown();
+        assertTrue(queued.await(5, TimeUnit.SECONDS));
+        first.get().join(5000);
+        assertFalse(first.get().isAlive());
+
+        //The next request starts new workers
+        CountDownLatch restarted = new CountDownLatch(1);
+        dispatcher.dispatch(Priority.NORMAL, "a", () -> {
+            second.set(Thread.currentThread());
+            restarted.countDown();
+        });
+        assertTrue(restarted.await(5, TimeUnit.SECONDS));
+        assertNotSame(first.get(), second.get());
+    }
+
+    @Test
+    void testFailingTask() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        dispatcher.dispatch(Priority.NORMAL, "a", () -> {
+            throw new IllegalStateException("Failed");
+        });
+        dispatcher.dispatch(Priority.NORMAL, "a", done::countDown);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    //Occupies the only worker until the test releases it
+    private void block(String host) throws InterruptedException {
+        block(host, new AtomicReference<>());
+    }
+
+    private void block(String host, AtomicReference<Thread> worker) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        dispatcher.dispatch(Priority.HIGH, host, () -> {
+            worker.set(Thread.currentThread());
+            started.countDown();
+            await(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+    }
+
+    private void dispatch(Priority priority, String host, String name, List<String> order, CountDownLatch done) {
+        dispatcher.dispatch(priority, host, () -> {
+            order.add(name);
+            done.countDown();
+        });
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}